@@ -18,15 +18,13 @@ import ch.epfl.alpano.Interval2D;
 import ch.epfl.alpano.dem.ContinuousElevationModel;
 import ch.epfl.alpano.dem.DiscreteElevationModel;
 import ch.epfl.alpano.dem.HgtDiscreteElevationModel;
+import ch.epfl.alpano.gui.ArgbImage;
 import ch.epfl.alpano.gui.ChannelPainter;
 import ch.epfl.alpano.gui.ImagePainter;
 import ch.epfl.alpano.gui.Labelizer;
-import ch.epfl.alpano.gui.PanoramaRenderer;
 import ch.epfl.alpano.gui.PredefinedPanoramas;
 import ch.epfl.alpano.summit.GazetteerParser;
 import ch.epfl.alpano.summit.GazetteerParserTest;
-import javafx.embed.swing.SwingFXUtils;
-import javafx.scene.image.Image;
 
 public final class DrawPanorama {
     final static File HGT_FILE = new File("N46E006.hgt");
@@ -54,7 +52,7 @@ public final class DrawPanorama {
 
    
     
-    public static Image getImage() throws Exception{
+    public static void main(String[] args) throws Exception{
         try (DiscreteElevationModel dDEM =
                 new HgtDiscreteElevationModel(HGT_FILE)) {
              ContinuousElevationModel cDEM =
@@ -98,11 +96,9 @@ public final class DrawPanorama {
                  //  ImagePainter l = ImagePainter.gray(gray, opacity);
                    ImagePainter l = ImagePainter.hsb(h, s, b, opacity);
 
-                   Image i2 = PanoramaRenderer.renderPanorama(p, l);
-                   ImageIO.write(SwingFXUtils.fromFXImage(i2, null),
-                                 "png",
-                                 new File("niesen-profile.png"));
-        return i2;
+                   // rendered and encoded without starting JavaFX
+                   ArgbImage.renderInParallel(p, l)
+                                 .writePng(new File("niesen-profile.png"));
         }
     }
     private static int gray(double v) {
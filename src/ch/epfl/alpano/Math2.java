@@ -71,6 +71,32 @@ public interface Math2 {
         return lerp(z1, z2, y);
     }
 
+    /**
+     * computes length bilinear interpolations at once, the interpolation i
+     * being the one of bilerp(z00[i], z10[i], z01[i], z11[i], x[i], y[i]),
+     * stored in result[resultFrom + i]. The loop only has arithmetic on
+     * arrays, so that the JIT compiler vectorises it
+     * 
+     * @param z00
+     * @param z10
+     * @param z01
+     * @param z11
+     * @param x
+     * @param y
+     * @param result
+     * @param resultFrom
+     * @param length
+     */
+    public static void bilerp(double[] z00, double[] z10, double[] z01,
+            double[] z11, double[] x, double[] y, double[] result,
+            int resultFrom, int length) {
+        for (int i = 0; i < length; ++i) {
+            double z1 = x[i] * (z10[i] - z00[i]) + z00[i];
+            double z2 = x[i] * (z11[i] - z01[i]) + z01[i];
+            result[resultFrom + i] = y[i] * (z2 - z1) + z1;
+        }
+    }
+
     /**
      * @param f
      * @param minX
@@ -80,15 +106,37 @@ public interface Math2 {
      */
     public static double firstIntervalContainingRoot(DoubleUnaryOperator f,
             double minX, double maxX, double dX) {
+        return firstIntervalContainingRoot(f, minX, maxX, dX, new double[2]);
+    }
+
+    /**
+     * @param f
+     * @param minX
+     * @param maxX
+     * @param dX
+     * @param fAtBounds
+     *            an array of (at least) 2 elements, in which the values of f
+     *            at the lower and upper bounds of the interval are stored if
+     *            there is one
+     * @return the first interval containing a root in f, f being evaluated
+     *         once per point of the search grid
+     */
+    public static double firstIntervalContainingRoot(DoubleUnaryOperator f,
+            double minX, double maxX, double dX, double[] fAtBounds) {
+        if (!(minX < maxX))
+            return Double.POSITIVE_INFINITY;
+        // the value at the end of an interval is reused at its successor
+        double fOfX1 = f.applyAsDouble(minX);
         for (double i = minX; i < maxX; i += dX) {
-            double fOfX1 = f.applyAsDouble(i);
-            double fOfX2;
-            if((i+dX)>maxX) return Double.POSITIVE_INFINITY;
-            else
-            fOfX2= f.applyAsDouble(i + dX);
-            
-            if (fOfX1 * fOfX2 <= 0)
+            if ((i + dX) > maxX)
+                return Double.POSITIVE_INFINITY;
+            double fOfX2 = f.applyAsDouble(i + dX);
+            if (fOfX1 * fOfX2 <= 0) {
+                fAtBounds[0] = fOfX1;
+                fAtBounds[1] = fOfX2;
                 return i;
+            }
+            fOfX1 = fOfX2;
         }
         return Double.POSITIVE_INFINITY;
     }
@@ -102,8 +150,23 @@ public interface Math2 {
      */
     public static double improveRoot(DoubleUnaryOperator f, double x1,
             double x2, double epsilon) {
-        double fx1 = f.applyAsDouble(x1);
-        double fx2 = f.applyAsDouble(x2);
+        return improveRoot(f, x1, x2, f.applyAsDouble(x1), f.applyAsDouble(x2),
+                epsilon);
+    }
+
+    /**
+     * @param f
+     * @param x1
+     * @param x2
+     * @param fx1
+     *            the value of f at x1
+     * @param fx2
+     *            the value of f at x2
+     * @param epsilon
+     * @return a rough estimation of the abscissa of the root
+     */
+    public static double improveRoot(DoubleUnaryOperator f, double x1,
+            double x2, double fx1, double fx2, double epsilon) {
         if (fx1 * fx2 > 0)
             throw new IllegalArgumentException();
         while (Math.abs(x2 - x1) > epsilon) {
@@ -118,4 +181,163 @@ public interface Math2 {
         }
         return x1;
     }
+
+    /**
+     * @param f
+     * @param x1
+     * @param x2
+     * @param epsilon
+     * @return the lower bound of an interval of size at most epsilon
+     *         containing a root of f, found by the Illinois variant of the
+     *         false position method, or a root of f found on the way
+     * @throws IllegalArgumentException
+     *             if f has the same sign at x1 and x2
+     */
+    public static double improveRootIllinois(DoubleUnaryOperator f, double x1,
+            double x2, double epsilon) {
+        return improveRootIllinois(f, x1, x2, f.applyAsDouble(x1),
+                f.applyAsDouble(x2), epsilon);
+    }
+
+    /**
+     * @param f
+     * @param x1
+     * @param x2
+     * @param fx1
+     *            the value of f at x1
+     * @param fx2
+     *            the value of f at x2
+     * @param epsilon
+     * @return the lower bound of an interval of size at most epsilon
+     *         containing a root of f, found by the Illinois variant of the
+     *         false position method, or a root of f found on the way
+     * @throws IllegalArgumentException
+     *             if f has the same sign at x1 and x2
+     */
+    public static double improveRootIllinois(DoubleUnaryOperator f, double x1,
+            double x2, double fx1, double fx2, double epsilon) {
+        if (fx1 * fx2 > 0)
+            throw new IllegalArgumentException();
+        // side of the interval kept by the last iteration, -1 for the left
+        int side = 0;
+        while (Math.abs(x2 - x1) > epsilon) {
+            double xm = fx1 == fx2 ? (x1 + x2) / 2
+                    : (x1 * fx2 - x2 * fx1) / (fx2 - fx1);
+            // the interval shrinks by at least half the precision
+            xm = Math.min(Math.max(xm, x1 + epsilon / 2), x2 - epsilon / 2);
+            double fxm = f.applyAsDouble(xm);
+            if (fxm == 0)
+                return xm;
+            else if (fxm * fx1 <= 0) {
+                x2 = xm;
+                fx2 = fxm;
+                if (side == -1)
+                    fx1 /= 2;
+                side = -1;
+            } else {
+                x1 = xm;
+                fx1 = fxm;
+                if (side == 1)
+                    fx2 /= 2;
+                side = 1;
+            }
+        }
+        return x1;
+    }
+
+    /**
+     * @param f
+     * @param x1
+     * @param x2
+     * @param epsilon
+     * @return the lower bound of an interval of size at most epsilon
+     *         containing a root of f, found by Brent's method, or a root of f
+     *         found on the way
+     * @throws IllegalArgumentException
+     *             if f has the same sign at x1 and x2
+     */
+    public static double improveRootBrent(DoubleUnaryOperator f, double x1,
+            double x2, double epsilon) {
+        return improveRootBrent(f, x1, x2, f.applyAsDouble(x1),
+                f.applyAsDouble(x2), epsilon);
+    }
+
+    /**
+     * @param f
+     * @param x1
+     * @param x2
+     * @param fx1
+     *            the value of f at x1
+     * @param fx2
+     *            the value of f at x2
+     * @param epsilon
+     * @return the lower bound of an interval of size at most epsilon
+     *         containing a root of f, found by Brent's method, or a root of f
+     *         found on the way
+     * @throws IllegalArgumentException
+     *             if f has the same sign at x1 and x2
+     */
+    public static double improveRootBrent(DoubleUnaryOperator f, double x1,
+            double x2, double fx1, double fx2, double epsilon) {
+        if (fx1 * fx2 > 0)
+            throw new IllegalArgumentException();
+        // b is the best estimate of the root, c the other end of the
+        // interval containing it and a the previous value of b
+        double a = x1, b = x2, c = x1;
+        double fa = fx1, fb = fx2, fc = fa;
+        double d = b - a, e = d;
+        double tol = epsilon / 2;
+        while (true) {
+            if (fb * fc > 0) {
+                c = a;
+                fc = fa;
+                d = e = b - a;
+            }
+            if (Math.abs(fc) < Math.abs(fb)) {
+                a = b;
+                b = c;
+                c = a;
+                fa = fb;
+                fb = fc;
+                fc = fa;
+            }
+            double m = (c - b) / 2;
+            if (fb == 0)
+                return b;
+            if (Math.abs(m) <= tol)
+                return Math.min(b, c);
+
+            if (Math.abs(e) < tol || Math.abs(fa) <= Math.abs(fb)) {
+                d = e = m;
+            } else {
+                double s = fb / fa, p, q;
+                if (a == c) {
+                    // secant step
+                    p = 2 * m * s;
+                    q = 1 - s;
+                } else {
+                    // inverse quadratic interpolation
+                    double r = fb / fc;
+                    q = fa / fc;
+                    p = s * (2 * m * q * (q - r) - (b - a) * (r - 1));
+                    q = (q - 1) * (r - 1) * (s - 1);
+                }
+                if (p > 0)
+                    q = -q;
+                else
+                    p = -p;
+                if (2 * p < Math.min(3 * m * q - Math.abs(tol * q),
+                        Math.abs(e * q))) {
+                    e = d;
+                    d = p / q;
+                } else {
+                    d = e = m;
+                }
+            }
+            a = b;
+            fa = fb;
+            b += Math.abs(d) > tol ? d : Math.copySign(tol, m);
+            fb = f.applyAsDouble(b);
+        }
+    }
 }
@@ -115,6 +115,10 @@ public final class Panorama {
         return slopes[parameters().linearSampleIndex(x, y)];
     }
 
+    /**
+     * Panorama builder: distinct samples may be set concurrently by different
+     * threads, as long as build is only called once they are all done
+     */
     public final static class Builder {
         private 
         PanoramaParameters parameters;
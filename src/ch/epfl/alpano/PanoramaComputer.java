@@ -1,11 +1,19 @@
-
 package ch.epfl.alpano;
 
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 import ch.epfl.alpano.dem.ContinuousElevationModel;
+import ch.epfl.alpano.dem.DiscreteElevationModel;
 import ch.epfl.alpano.dem.ElevationProfile;
+import ch.epfl.alpano.dem.ElevationPyramid;
 import ch.epfl.alpano.Panorama.Builder;
 import ch.epfl.alpano.PanoramaParameters;;
 /**
@@ -15,16 +23,82 @@ import ch.epfl.alpano.PanoramaParameters;;
  */
 public final class PanoramaComputer {
     private final ContinuousElevationModel dem;
+    // step of the elevation samples of the profiles, 0 if they are not sampled
+    private final double profileStep;
+    // pyramid of the DEM used to skip blocks of terrain, or null
+    private final ElevationPyramid pyramid;
+    private final RootRefiner refiner;
     private static final double K = 0.13, COEF= ((1d - K) / (2d * Distance.EARTH_RADIUS));
     private static final int SPACING=64, EPSILON=4;
+    // safety margin subtracted from the distances deduced from a coarser panorama
+    private static final int HINT_MARGIN=1000;
+    // number of steps of the search grid skipped at once above the terrain
+    private static final int SKIPPED_STEPS=32;
     /**
      * @param dem
      * constructs a panorama computer
      * @throws NullPointerException
      */
     public PanoramaComputer(ContinuousElevationModel dem) {
+        this(dem, 0, null, RootRefiner.bisection());
+    }
+
+    /**
+     * @param dem
+     * @param profileStep
+     * @param pyramid
+     * @param refiner
+     * constructs a panorama computer whose profiles sample the elevation every
+     * profileStep meters, or never if it is 0, which skips the terrain using
+     * the pyramid if it is not null and refines the roots with the refiner
+     * @throws NullPointerException
+     */
+    private PanoramaComputer(ContinuousElevationModel dem, double profileStep,
+            ElevationPyramid pyramid, RootRefiner refiner) {
         Objects.requireNonNull(dem);
         this.dem = dem;
+        this.profileStep = profileStep;
+        this.pyramid = pyramid;
+        this.refiner = Objects.requireNonNull(refiner);
+    }
+
+    /**
+     * @param elevationStep
+     * @return a panorama computer identical to this one, except that the
+     *         elevation of the terrain is sampled once per column every
+     *         elevationStep meters, the root search of all the rows of the
+     *         column then interpolating between those samples
+     * @throws IllegalArgumentException
+     */
+    public PanoramaComputer withSampledProfiles(double elevationStep) {
+        Preconditions.checkArgument(elevationStep > 0);
+        return new PanoramaComputer(dem, elevationStep, pyramid, refiner);
+    }
+
+    /**
+     * @param pyramid
+     *            the pyramid of the discrete model of the DEM (or of some of
+     *            its tiles)
+     * @return a panorama computer identical to this one, except that the root
+     *         search of profiles that are not sampled skips the blocks of
+     *         terrain that the pyramid shows to be below the ray. The result
+     *         is unchanged
+     * @throws NullPointerException
+     */
+    public PanoramaComputer withElevationPyramid(ElevationPyramid pyramid) {
+        return new PanoramaComputer(dem, profileStep,
+                Objects.requireNonNull(pyramid), refiner);
+    }
+
+    /**
+     * @param refiner
+     * @return a panorama computer identical to this one, except that the roots
+     *         are refined (to the same precision) by the given refiner instead
+     *         of by bisection
+     * @throws NullPointerException
+     */
+    public PanoramaComputer withRootRefiner(RootRefiner refiner) {
+        return new PanoramaComputer(dem, profileStep, pyramid, refiner);
     }
 
     /**
@@ -34,34 +108,413 @@ public final class PanoramaComputer {
     public Panorama computePanorama(PanoramaParameters parameters) {
         Builder b = new Builder(parameters);
 
-        for (int i = 0; i < parameters.width(); i++) {
-            ElevationProfile profile = new ElevationProfile(dem,
-                    parameters.observerPosition(), parameters.azimuthForX(i),
-                    parameters.maxDistance());
-            double root = 0;
-            
-            for (int j = parameters.height() - 1; j >= 0; --j) {
-
-                double slope = parameters.altitudeForY(j);
-                DoubleUnaryOperator f = rayToGroundDistance(profile,
-                        parameters.observerElevation(), Math.tan(slope));
-                double bound = Math2.firstIntervalContainingRoot(f, root,
-                        parameters.maxDistance(), SPACING);
-                if (bound != Double.POSITIVE_INFINITY) {
-                    root = Math2.improveRoot(f, bound, bound + SPACING, EPSILON);
-                    GeoPoint point=profile.positionAt(root);
-                    b.setDistanceAt(i, j, (float) (root/Math.cos(slope)));
-                    b.setElevationAt(i, j, (float) dem.elevationAt(point));
-                    b.setLatitudeAt(i, j, (float) point.latitude());
-                    b.setLongitudeAt(i, j, (float) point.longitude());
-                    b.setSlopeAt(i, j, (float) dem.slopeAt(point));
-                }
-                else break;
+        for (int i = 0; i < parameters.width(); i++)
+            computeColumn(b, parameters, null, i);
+
+        return b.build();
+    }
+
+    /**
+     * @param parameters
+     * @return a panorama correspending to the parameters, whose columns are
+     *         computed in parallel in the common fork-join pool
+     */
+    public Panorama computePanoramaInParallel(PanoramaParameters parameters) {
+        return computePanoramaInParallel(parameters, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param parameters
+     * @param pool
+     * @return a panorama correspending to the parameters, whose columns are
+     *         computed in parallel in the given pool. The result is identical
+     *         to the one of computePanorama, since the columns are independent
+     * @throws NullPointerException
+     */
+    public Panorama computePanoramaInParallel(PanoramaParameters parameters,
+            ForkJoinPool pool) {
+        Objects.requireNonNull(pool);
+        Builder b = new Builder(parameters);
+
+        // a parallel stream started from a task of the pool runs in that pool
+        pool.submit(() -> IntStream.range(0, parameters.width()).parallel()
+                .forEach(i -> computeColumn(b, parameters, null, i))).join();
+
+        return b.build();
+    }
+
+    /**
+     * @param parameters
+     * @param progress
+     * @return a future panorama correspending to the parameters, computed
+     *         asynchronously in the common fork-join pool
+     * @see #computePanoramaAsync(PanoramaParameters, IntConsumer, ForkJoinPool)
+     */
+    public CompletableFuture<Panorama> computePanoramaAsync(
+            PanoramaParameters parameters, IntConsumer progress) {
+        return computePanoramaAsync(parameters, progress,
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param parameters
+     * @param progress
+     *            called, possibly concurrently, with the number of computed
+     *            columns each time a column is done
+     * @param pool
+     * @return a future panorama correspending to the parameters, whose columns
+     *         are computed in parallel by the threads of the pool (a pool is
+     *         required, a parallel stream only running in the pool of the
+     *         task that starts it). Cancelling (or completing) the future
+     *         stops the computation: the columns being computed are
+     *         finished, the others are not started
+     * @throws NullPointerException
+     */
+    public CompletableFuture<Panorama> computePanoramaAsync(
+            PanoramaParameters parameters, IntConsumer progress,
+            ForkJoinPool pool) {
+        return computePanoramaAsync(parameters, null, progress, pool);
+    }
+
+    /**
+     * @param parameters
+     * @param coarser
+     *            a panorama of the same view at a lower resolution, or null.
+     *            The distances it contains are used as lower bounds of the
+     *            root search, which assumes that the terrain seen by a sample
+     *            is not much closer than the one seen by the surrounding
+     *            samples of the coarser panorama. Terrain narrower than those
+     *            samples can therefore be missed: the result is a preview,
+     *            exact only if coarser is null
+     * @param progress
+     * @param pool
+     * @return a future panorama correspending to the parameters
+     * @see #computePanoramaAsync(PanoramaParameters, IntConsumer, ForkJoinPool)
+     * @throws NullPointerException
+     */
+    public CompletableFuture<Panorama> computePanoramaAsync(
+            PanoramaParameters parameters, Panorama coarser,
+            IntConsumer progress, ForkJoinPool pool) {
+        Objects.requireNonNull(parameters);
+        Objects.requireNonNull(progress);
+        CompletableFuture<Panorama> result = new CompletableFuture<>();
+        AtomicInteger computedColumns = new AtomicInteger();
+
+        // a parallel stream started from a task of the pool runs in that pool
+        pool.execute(() -> {
+            try {
+                Builder b = new Builder(parameters);
+                IntStream.range(0, parameters.width()).parallel().forEach(i -> {
+                    if (!result.isDone()) {
+                        computeColumn(b, parameters, coarser, i);
+                        progress.accept(computedColumns.incrementAndGet());
+                    }
+                });
+                if (!result.isDone())
+                    result.complete(b.build());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
             }
+        });
+
+        return result;
+    }
 
+    /**
+     * @param passes
+     *            the parameters of the same view at increasing resolutions
+     * @param preview
+     *            the computer of the passes but the last, which may for
+     *            example sample its profiles
+     * @param publisher
+     *            called with the panorama of each pass, in order and on a
+     *            thread of the pool, before the next pass starts
+     * @param pool
+     * @return a future panorama of the last pass. Each preview pass starts
+     *         its root search at the bounds given by the previous pass, but
+     *         the last one is computed by this computer without them, so
+     *         that it is exact. Cancelling the future stops the current pass
+     *         and prevents the next ones
+     * @throws IllegalArgumentException
+     *             if there is no pass
+     * @throws NullPointerException
+     */
+    public CompletableFuture<Panorama> computePanoramaInPasses(
+            List<PanoramaParameters> passes, PanoramaComputer preview,
+            Consumer<Panorama> publisher, ForkJoinPool pool) {
+        Preconditions.checkArgument(!passes.isEmpty());
+        Objects.requireNonNull(preview);
+        Objects.requireNonNull(publisher);
+        Objects.requireNonNull(pool);
+        CompletableFuture<Panorama> result = new CompletableFuture<>();
+        computePass(passes, 0, null, preview, publisher, pool, result);
+        return result;
+    }
+
+    /**
+     * @param passes
+     * @param index
+     * @param coarser
+     * @param preview
+     * @param publisher
+     * @param pool
+     * @param result
+     * computes the pass of the given index, publishes it and starts the next
+     * one, or completes the result with it if it is the last one
+     */
+    private void computePass(List<PanoramaParameters> passes, int index,
+            Panorama coarser, PanoramaComputer preview,
+            Consumer<Panorama> publisher, ForkJoinPool pool,
+            CompletableFuture<Panorama> result) {
+        boolean last = index == passes.size() - 1;
+        CompletableFuture<Panorama> pass = last
+                ? computePanoramaAsync(passes.get(index), null, c -> {}, pool)
+                : preview.computePanoramaAsync(passes.get(index), coarser,
+                        c -> {}, pool);
+        result.whenComplete((p, t) -> pass.cancel(false));
+
+        pass.whenComplete((p, t) -> {
+            if (t != null) {
+                result.completeExceptionally(t);
+                return;
+            }
+            if (result.isDone())
+                return;
+            try {
+                publisher.accept(p);
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            if (last)
+                result.complete(p);
+            else if (!result.isDone())
+                computePass(passes, index + 1, p, preview, publisher, pool,
+                        result);
+        });
+    }
+
+    /**
+     * @param b
+     * @param parameters
+     * @param coarser
+     * @param i
+     * computes the samples of the column i and stores them in the builder,
+     * starting the root search at the bound given by the coarser panorama if
+     * it is not null
+     */
+    private void computeColumn(Builder b, PanoramaParameters parameters,
+            Panorama coarser, int i) {
+        ElevationProfile profile = new ElevationProfile(dem,
+                parameters.observerPosition(), parameters.azimuthForX(i),
+                parameters.maxDistance(), profileStep);
+        double root = 0;
+        double[] elevationAndSlope = new double[2];
+        double horizon = profileStep > 0 ? horizonSlope(profile, parameters)
+                : Double.POSITIVE_INFINITY;
+
+        for (int j = parameters.height() - 1; j >= 0; --j) {
+
+            double slope = parameters.altitudeForY(j);
+            double raySlope = Math.tan(slope);
+            // the ray passes above every point of the profile: it sees the
+            // sky, as do the rays of the rows above
+            if (raySlope > horizon)
+                break;
+            DoubleUnaryOperator f = rayToGroundDistance(profile,
+                    parameters.observerElevation(), raySlope);
+            double minX = coarser == null ? root
+                    : Math.max(root, lowerBound(coarser, parameters, i, j));
+            double maxX = profileStep > 0
+                    ? searchLimit(profile, parameters.observerElevation(),
+                            raySlope, minX, parameters.maxDistance())
+                    : parameters.maxDistance();
+            double newRoot = pyramid != null && profileStep == 0
+                    ? firstRoot(profile, f, parameters.observerElevation(),
+                            raySlope, minX, maxX)
+                    : refiner.firstRoot(f, minX, maxX, SPACING, EPSILON);
+            if (newRoot != Double.POSITIVE_INFINITY) {
+                root = newRoot;
+                GeoPoint point=profile.positionAt(root);
+                dem.elevationAndSlopeAt(point.longitude(), point.latitude(),
+                        elevationAndSlope);
+                b.setDistanceAt(i, j, (float) (root/Math.cos(slope)));
+                b.setElevationAt(i, j, (float) elevationAndSlope[0]);
+                b.setLatitudeAt(i, j, (float) point.latitude());
+                b.setLongitudeAt(i, j, (float) point.longitude());
+                b.setSlopeAt(i, j, (float) elevationAndSlope[1]);
+            }
+            else break;
         }
+    }
 
-        return b.build();
+    /**
+     * @param profile
+     * @param f
+     * @param ray0
+     * @param raySlope
+     * @param minX
+     * @param maxX
+     * @return the same root as the refiner's firstRoot with the search
+     *         spacing, skipping the blocks of the search grid over which the
+     *         ray is above the terrain according to the pyramid
+     */
+    private double firstRoot(ElevationProfile profile, DoubleUnaryOperator f,
+            double ray0, double raySlope, double minX, double maxX) {
+        double x = minX;
+        while (x < maxX) {
+            // the block ends are computed like the points of the search grid
+            double end = x;
+            for (int k = 0; k < SKIPPED_STEPS && end < maxX; ++k)
+                end += SPACING;
+            if (end > maxX)
+                return refiner.firstRoot(f, x, maxX, SPACING, EPSILON);
+
+            double lowestRay = Math.min(Math.max(-raySlope / (2 * COEF), x), end);
+            if (ray0 + lowestRay * raySlope + Math2.sq(lowestRay) * COEF
+                    <= maxElevationBetween(profile, x, end)) {
+                double root = refiner.firstRoot(f, x, end, SPACING, EPSILON);
+                if (root != Double.POSITIVE_INFINITY)
+                    return root;
+            }
+            x = end;
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @param profile
+     * @param x0
+     * @param x1
+     * @return an upper bound of the elevation of the profile between x0 and
+     *         x1, given by the pyramid, or infinity if the samples it depends
+     *         on are not all in the pyramid
+     */
+    private double maxElevationBetween(ElevationProfile profile, double x0,
+            double x1) {
+        GeoPoint p0 = profile.positionAt(x0), p1 = profile.positionAt(x1);
+        double sX0 = DiscreteElevationModel.sampleIndex(p0.longitude());
+        double sX1 = DiscreteElevationModel.sampleIndex(p1.longitude());
+        double sY0 = DiscreteElevationModel.sampleIndex(p0.latitude());
+        double sY1 = DiscreteElevationModel.sampleIndex(p1.latitude());
+        // one sample of margin for the curvature of the profile, one for the
+        // neighbours used by the bilinear interpolation
+        int xMin = (int) Math.floor(Math.min(sX0, sX1)) - 1;
+        int xMax = (int) Math.floor(Math.max(sX0, sX1)) + 2;
+        int yMin = (int) Math.floor(Math.min(sY0, sY1)) - 1;
+        int yMax = (int) Math.floor(Math.max(sY0, sY1)) + 2;
+        if (!pyramid.extent().contains(xMin, yMin)
+                || !pyramid.extent().contains(xMax, yMax))
+            return Double.POSITIVE_INFINITY;
+        return pyramid.maxElevation(xMin, yMin, xMax, yMax);
+    }
+
+    /**
+     * @param profile
+     * @param parameters
+     * @return the slope of the steepest ray going from the observer to a
+     *         point of the sampled profile, above which a ray sees the sky,
+     *         or infinity if the observer is not above the terrain.
+     *         Between two samples, the elevation being e(x) = ray0 + c + b*x,
+     *         the slope g(x) = c/x + b - COEF*x of the ray to the point at x
+     *         is maximal at the first of them if c is not negative, and at
+     *         sqrt(-c/COEF), where g'(x) = -c/x^2 - COEF is 0, otherwise
+     */
+    private double horizonSlope(ElevationProfile profile,
+            PanoramaParameters parameters) {
+        double ray0 = parameters.observerElevation();
+        double maxDistance = parameters.maxDistance();
+        double horizon = Double.NEGATIVE_INFINITY;
+        double x0 = 0, e0 = profile.elevationAt(0);
+        for (int k = 1; x0 < maxDistance; ++k) {
+            double x1 = Math.min(k * profileStep, maxDistance);
+            double e1 = profile.elevationAt(x1);
+            double b = (e1 - e0) / (x1 - x0);
+            double c = e0 - b * x0 - ray0;
+            double x = c < 0 ? Math.max(x0, Math.min(Math.sqrt(-c / COEF), x1)) : x0;
+            if (x == 0)
+                return Double.POSITIVE_INFINITY;
+            horizon = Math.max(horizon, c / x + b - COEF * x);
+            x0 = x1;
+            e0 = e1;
+        }
+        return horizon;
+    }
+
+    /**
+     * @param profile
+     * @param ray0
+     * @param raySlope
+     * @param minX
+     * @param maxX
+     * @return the upper bound of the root search of a ray starting at minX: a
+     *         bit more than the first point of the search grid from which the
+     *         ray, rising, stays above all the remaining terrain, or maxX if
+     *         there is none
+     */
+    private static double searchLimit(ElevationProfile profile, double ray0,
+            double raySlope, double minX, double maxX) {
+        // the ray rises from the apex of its parabola on
+        double apex = -raySlope / (2 * COEF);
+        int lo = (int) Math.ceil(Math.max(0, apex - minX) / SPACING);
+        int hi = (int) Math.floor((maxX - minX) / SPACING);
+        if (lo > hi || !clearsTerrain(profile, ray0, raySlope, Math.min(maxX, minX + hi * SPACING)))
+            return maxX;
+        // the terrain envelope decreases while the ray rises: binary search
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (clearsTerrain(profile, ray0, raySlope, Math.min(maxX, minX + mid * SPACING)))
+                hi = mid;
+            else
+                lo = mid + 1;
+        }
+        // half a step of margin, the search grid accumulating rounding errors
+        return Math.min(maxX, minX + lo * SPACING + SPACING / 2d);
+    }
+
+    /**
+     * @param profile
+     * @param ray0
+     * @param raySlope
+     * @param x
+     * @return true if the ray is, at x, above all the terrain located at x or
+     *         further
+     */
+    private static boolean clearsTerrain(ElevationProfile profile, double ray0,
+            double raySlope, double x) {
+        return ray0 + x * raySlope + Math2.sq(x) * COEF > profile.maxElevationFrom(x);
+    }
+
+    /**
+     * @param coarser
+     * @param parameters
+     * @param x
+     * @param y
+     * @return a lower bound of the horizontal distance to the ground seen by
+     *         the sample (x,y), deduced from the four samples of the coarser
+     *         panorama that surround it, or 0 if one of them is missing or
+     *         does not see the ground
+     */
+    private static double lowerBound(Panorama coarser,
+            PanoramaParameters parameters, int x, int y) {
+        PanoramaParameters c = coarser.parameters();
+        double unitAngle = c.horizontalFieldOfView() / (c.width() - 1);
+        double cX = (c.width() - 1) / 2d + Math2.angularDistance(
+                c.centerAzimuth(), parameters.azimuthForX(x)) / unitAngle;
+        double cY = (c.height() - 1) / 2d - parameters.altitudeForY(y) / unitAngle;
+        int x0 = (int) Math.floor(cX);
+        int y0 = (int) Math.floor(cY);
+
+        double bound = Double.POSITIVE_INFINITY;
+        for (int cx = x0; cx <= x0 + 1; ++cx) {
+            for (int cy = y0; cy <= y0 + 1; ++cy) {
+                float d = coarser.distanceAt(cx, cy, 0);
+                if (d == 0 || d == Float.POSITIVE_INFINITY)
+                    return 0;
+                bound = Math.min(bound, d * Math.cos(c.altitudeForY(cy)));
+            }
+        }
+        return Math.max(0, bound - HINT_MARGIN);
     }
 
     /**
@@ -0,0 +1,90 @@
+package ch.epfl.alpano;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Root refiner: narrows down an interval known to contain a root of a
+ * function
+ * 
+ * @author Haitham Hammami (257479)
+ * @author Makki Fourati (247746)
+ */
+@FunctionalInterface
+public interface RootRefiner {
+
+    /**
+     * @param f
+     * @param x1
+     * @param x2
+     * @param fx1
+     *            the value of f at x1
+     * @param fx2
+     *            the value of f at x2
+     * @param epsilon
+     * @return the lower bound of an interval of size at most epsilon, included
+     *         in [x1, x2] and containing a root of f, or a root of f
+     * @throws IllegalArgumentException
+     *             if fx1 and fx2 have the same sign
+     */
+    double improveRoot(DoubleUnaryOperator f, double x1, double x2,
+            double fx1, double fx2, double epsilon);
+
+    /**
+     * @param f
+     * @param x1
+     * @param x2
+     * @param epsilon
+     * @return the lower bound of an interval of size at most epsilon, included
+     *         in [x1, x2] and containing a root of f, or a root of f
+     * @throws IllegalArgumentException
+     *             if f has the same sign at x1 and x2
+     */
+    default double improveRoot(DoubleUnaryOperator f, double x1, double x2,
+            double epsilon) {
+        return improveRoot(f, x1, x2, f.applyAsDouble(x1), f.applyAsDouble(x2),
+                epsilon);
+    }
+
+    /**
+     * @param f
+     * @param minX
+     * @param maxX
+     * @param dX
+     * @param epsilon
+     * @return the root of f refined in the first interval found by
+     *         Math2.firstIntervalContainingRoot, or positive infinity if there
+     *         is none. f is evaluated once per point of the search grid, and
+     *         not again at the ends of the interval given to the refiner
+     */
+    default double firstRoot(DoubleUnaryOperator f, double minX, double maxX,
+            double dX, double epsilon) {
+        double[] fAtBounds = new double[2];
+        double x1 = Math2.firstIntervalContainingRoot(f, minX, maxX, dX,
+                fAtBounds);
+        return x1 == Double.POSITIVE_INFINITY ? x1
+                : improveRoot(f, x1, x1 + dX, fAtBounds[0], fAtBounds[1],
+                        epsilon);
+    }
+
+    /**
+     * @return a root refiner halving the interval at each step
+     */
+    static RootRefiner bisection() {
+        return Math2::improveRoot;
+    }
+
+    /**
+     * @return a root refiner using the Illinois variant of the false position
+     *         method
+     */
+    static RootRefiner illinois() {
+        return Math2::improveRootIllinois;
+    }
+
+    /**
+     * @return a root refiner using Brent's method
+     */
+    static RootRefiner brent() {
+        return Math2::improveRootBrent;
+    }
+}
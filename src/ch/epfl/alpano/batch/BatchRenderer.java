@@ -0,0 +1,275 @@
+package ch.epfl.alpano.batch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ch.epfl.alpano.Panorama;
+import ch.epfl.alpano.PanoramaComputer;
+import ch.epfl.alpano.RootRefiner;
+import ch.epfl.alpano.dem.ContinuousElevationModel;
+import ch.epfl.alpano.dem.HgtTileCatalog;
+import ch.epfl.alpano.gui.ArgbImage;
+import ch.epfl.alpano.gui.ImagePainter;
+import ch.epfl.alpano.gui.PanoramaUserParameters;
+import ch.epfl.alpano.gui.PredefinedPanoramas;
+import ch.epfl.alpano.gui.UserParameter;
+
+/**
+ * Batch renderer: computes the panoramas of a list of user parameters
+ * concurrently over one elevation model, without JavaFX, and writes their
+ * images as PNG files with the time each of them took
+ *
+ * <pre>
+ * BatchRenderer [-threads n] [-hgt directory] [-out directory] (-predefined | jobs.csv)
+ * </pre>
+ *
+ * Each line of the CSV file is a job: its name followed by the 9 user
+ * parameters, in the order of UserParameter and in its units, within its
+ * limits. The empty lines and those starting with # are ignored.
+ *
+ * @author Haitham Hammami (257479)
+ * @author Makki Fourati (247746)
+ */
+public final class BatchRenderer {
+    private static final int MAX_MAPPED_TILES = 16;
+    private static final String TIMINGS_FILE = "timings.csv";
+
+    /**
+     * Job: the user parameters of a panorama and the name of its image
+     */
+    static final class Job {
+        private final String name;
+        private final PanoramaUserParameters parameters;
+
+        /**
+         * @param name
+         * @param parameters
+         * @throws NullPointerException
+         */
+        Job(String name, PanoramaUserParameters parameters) {
+            this.name = Objects.requireNonNull(name);
+            this.parameters = Objects.requireNonNull(parameters);
+        }
+
+        /**
+         * @return the name of the job
+         */
+        String name() {
+            return name;
+        }
+
+        /**
+         * @return the user parameters of the panorama
+         */
+        PanoramaUserParameters parameters() {
+            return parameters;
+        }
+    }
+
+    /**
+     * Batch renderer
+     */
+    private BatchRenderer() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        File hgtDirectory = new File(".");
+        File outDirectory = new File(".");
+        List<Job> jobs = null;
+        for (int i = 0; i < args.length; ++i) {
+            if (args[i].equals("-threads") && i + 1 < args.length) {
+                try {
+                    threads = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    jobs = null;
+                    break;
+                }
+            } else if (args[i].equals("-hgt") && i + 1 < args.length)
+                hgtDirectory = new File(args[++i]);
+            else if (args[i].equals("-out") && i + 1 < args.length)
+                outDirectory = new File(args[++i]);
+            else if (args[i].equals("-predefined"))
+                jobs = predefinedJobs();
+            else if (!args[i].startsWith("-")) {
+                try (BufferedReader r = Files.newBufferedReader(
+                        new File(args[i]).toPath(), StandardCharsets.UTF_8)) {
+                    jobs = readJobs(r);
+                }
+            } else {
+                jobs = null;
+                break;
+            }
+        }
+        if (jobs == null || threads < 1) {
+            System.err.println("usage: BatchRenderer [-threads n] [-hgt directory]"
+                    + " [-out directory] (-predefined | jobs.csv)");
+            System.exit(2);
+        }
+        if (!outDirectory.isDirectory() && !outDirectory.mkdirs())
+            throw new IOException("cannot create " + outDirectory);
+
+        int failures;
+        try (HgtTileCatalog catalog = new HgtTileCatalog(hgtDirectory, MAX_MAPPED_TILES)) {
+            PanoramaComputer computer = new PanoramaComputer(
+                    new ContinuousElevationModel(catalog, catalog.slopes()))
+                            .withElevationPyramid(catalog.pyramid())
+                            .withRootRefiner(RootRefiner.brent());
+            failures = render(computer, jobs, outDirectory, threads, System.out);
+        }
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * @return the jobs of the predefined panoramas, named after their
+     *         parameters
+     */
+    static List<Job> predefinedJobs() {
+        List<Job> jobs = new ArrayList<>();
+        for (PanoramaUserParameters p : PredefinedPanoramas.ALL)
+            jobs.add(new Job(defaultName(p), p));
+        return Collections.unmodifiableList(jobs);
+    }
+
+    /**
+     * @param p
+     * @return a name made of the position, the elevation and the azimuth of
+     *         the observer
+     */
+    private static String defaultName(PanoramaUserParameters p) {
+        return p.observerLongitude() + "_" + p.observerLatitude() + "_"
+                + p.observerElevation() + "_" + p.centerAzimuth();
+    }
+
+    /**
+     * @param reader
+     * @return the jobs of the lines read from the reader
+     * @throws IOException
+     * @throws IllegalArgumentException
+     *             if a line is not a file name (without directory) followed
+     *             by 9 integers, or if one of them is out of the limits of
+     *             its parameter
+     */
+    static List<Job> readJobs(Reader reader) throws IOException {
+        BufferedReader r = new BufferedReader(reader);
+        List<Job> jobs = new ArrayList<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = r.readLine()) != null) {
+            ++lineNumber;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            String[] fields = line.split(",");
+            UserParameter[] parameters = UserParameter.values();
+            String name = fields[0].trim();
+            if (fields.length != parameters.length + 1 || name.isEmpty()
+                    || name.contains("/") || name.contains("\\"))
+                throw new IllegalArgumentException("line " + lineNumber
+                        + ": a file name and " + parameters.length + " values expected");
+            int[] v = new int[parameters.length];
+            try {
+                for (int i = 0; i < v.length; ++i)
+                    v[i] = Integer.parseInt(fields[i + 1].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("line " + lineNumber + ": " + e.getMessage());
+            }
+            PanoramaUserParameters p = new PanoramaUserParameters(v[0],
+                    v[1], v[2], v[3], v[4], v[5], v[6], v[7], v[8]);
+            // the parameters are sanitized, a value that changed was invalid
+            for (int i = 0; i < v.length; ++i) {
+                if (p.get(parameters[i]) != v[i])
+                    throw new IllegalArgumentException("line " + lineNumber + ": "
+                            + parameters[i] + " " + v[i] + " out of range, closest valid value "
+                            + p.get(parameters[i]));
+            }
+            jobs.add(new Job(name, p));
+        }
+        return Collections.unmodifiableList(jobs);
+    }
+
+    /**
+     * computes and writes the images of the jobs, threads at a time, and
+     * their timings to the file timings.csv of the directory. Each panorama
+     * is computed and painted on a single thread, the jobs being many. The
+     * timings and a summary are also printed to out, the failures to the
+     * standard error
+     *
+     * @param computer
+     * @param jobs
+     * @param directory
+     * @param threads
+     * @param out
+     * @return the number of jobs that failed
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    static int render(PanoramaComputer computer, List<Job> jobs,
+            File directory, int threads, PrintStream out) throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        int failures = 0;
+        long start = System.nanoTime();
+        try (PrintWriter timings = new PrintWriter(Files.newBufferedWriter(
+                new File(directory, TIMINGS_FILE).toPath(), StandardCharsets.UTF_8))) {
+            timings.println("name,width,height,compute_ms,paint_ms,write_ms");
+            List<Future<String>> results = new ArrayList<>();
+            for (Job job : jobs)
+                results.add(executor.submit(() -> renderJob(computer, job, directory)));
+
+            // the results are reported in the order of the jobs
+            for (int i = 0; i < jobs.size(); ++i) {
+                try {
+                    String timing = results.get(i).get();
+                    timings.println(timing);
+                    out.println(timing);
+                } catch (ExecutionException e) {
+                    ++failures;
+                    System.err.println(jobs.get(i).name() + ": " + e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        out.printf(Locale.ROOT, "%d panoramas in %.1f s, %d failed%n",
+                jobs.size() - failures, (System.nanoTime() - start) / 1e9, failures);
+        return failures;
+    }
+
+    /**
+     * computes, paints and writes the image of a job
+     *
+     * @param computer
+     * @param job
+     * @param directory
+     * @return the line of the timings of the job
+     * @throws IOException
+     */
+    private static String renderJob(PanoramaComputer computer, Job job,
+            File directory) throws IOException {
+        long t0 = System.nanoTime();
+        Panorama p = computer.computePanorama(job.parameters().panoramaParameters());
+        long t1 = System.nanoTime();
+        ArgbImage image = ArgbImage.render(p, ImagePainter.panorama(p));
+        long t2 = System.nanoTime();
+        image.writePng(new File(directory, job.name() + ".png"));
+        long t3 = System.nanoTime();
+        return String.format(Locale.ROOT, "%s,%d,%d,%.1f,%.1f,%.1f", job.name(),
+                image.width(), image.height(), (t1 - t0) / 1e6, (t2 - t1) / 1e6,
+                (t3 - t2) / 1e6);
+    }
+}
@@ -0,0 +1,153 @@
+package ch.epfl.alpano.dem;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import ch.epfl.alpano.Interval1D;
+import ch.epfl.alpano.Interval2D;
+import ch.epfl.alpano.Preconditions;
+
+/**
+ * Blocked discrete elevation model: reads the samples of a file storing them
+ * in square blocks of 64 x 64 samples, so that the neighbours of a sample
+ * are nearly always in the same block, and usually in the same page
+ *
+ * @author Haitham Hammami (257479)
+ * @author Makki Fourati (247746)
+ */
+public final class BlockedDiscreteElevationModel implements DiscreteElevationModel {
+	private static final int MAGIC = 0x414C5042;
+	// number of samples per side of a block, as a power of two
+	private static final int BLOCK_BITS = 6;
+	private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+	private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+	// the header takes a whole page so that the blocks are aligned on pages
+	private static final int HEADER_BYTES = 4096;
+
+	private final Interval2D extent;
+	private final int fromX, fromY, toX, toY;
+	private final int blocksX;
+	private MappedByteBuffer mapping;
+	private ShortBuffer buffer;
+
+	/**
+	 * constructs the model of a file written by write
+	 *
+	 * @param file
+	 * @throws IllegalArgumentException
+	 *             if the file cannot be read or is not a blocked elevation
+	 *             file
+	 */
+	public BlockedDiscreteElevationModel(File file) {
+		try (RandomAccessFile f = new RandomAccessFile(file, "r")) {
+			Preconditions.checkArgument(f.length() >= HEADER_BYTES && f.readInt() == MAGIC);
+			fromX = f.readInt();
+			toX = f.readInt();
+			fromY = f.readInt();
+			toY = f.readInt();
+			Preconditions.checkArgument(fromX <= toX && fromY <= toY);
+			extent = new Interval2D(new Interval1D(fromX, toX), new Interval1D(fromY, toY));
+			blocksX = blocks(extent.iX().size());
+			Preconditions.checkArgument(f.length() == length(extent));
+
+			mapping = f.getChannel().map(MapMode.READ_ONLY, 0, f.length());
+			buffer = mapping.asShortBuffer();
+		} catch (IOException e) {
+			throw new IllegalArgumentException();
+		}
+	}
+
+	/**
+	 * @param size
+	 * @return the number of blocks needed to cover size samples
+	 */
+	private static int blocks(int size) {
+		return (size + BLOCK_MASK) >> BLOCK_BITS;
+	}
+
+	/**
+	 * @param extent
+	 * @return the size in bytes of the file of a model of the given extent
+	 */
+	private static long length(Interval2D extent) {
+		return HEADER_BYTES + 2L * blocks(extent.iX().size())
+				* blocks(extent.iY().size()) * BLOCK_SIZE * BLOCK_SIZE;
+	}
+
+	/**
+	 * @param x
+	 *            the index of a sample relative to the south-west corner
+	 * @param y
+	 * @param blocksX
+	 * @return the index of the sample in the file, in shorts
+	 */
+	private static int index(int x, int y, int blocksX) {
+		int block = (y >> BLOCK_BITS) * blocksX + (x >> BLOCK_BITS);
+		return HEADER_BYTES / 2 + (block << (2 * BLOCK_BITS))
+				+ ((y & BLOCK_MASK) << BLOCK_BITS) + (x & BLOCK_MASK);
+	}
+
+	@Override
+	public Interval2D extent() {
+		return extent;
+	}
+
+	@Override
+	public double elevationSample(int x, int y) {
+		Preconditions.checkArgument(x >= fromX && x <= toX && y >= fromY && y <= toY);
+		return buffer.get(index(x - fromX, y - fromY, blocksX));
+	}
+
+	/**
+	 * releases the mapping of the file at once. The samples of the model must
+	 * not be read anymore, nor be being read by another thread
+	 */
+	@Override
+	public void close() throws Exception {
+		if (mapping != null) {
+			buffer = null;
+			MappedBuffers.unmap(mapping);
+			mapping = null;
+		}
+	}
+
+	/**
+	 * writes the samples of the DEM to the file in blocks of 64 x 64
+	 * samples, rounded to the closest integer
+	 *
+	 * @param dem
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void write(DiscreteElevationModel dem, File file) throws IOException {
+		Interval2D extent = dem.extent();
+		Interval1D iX = extent.iX(), iY = extent.iY();
+		int blocksX = blocks(iX.size());
+		try (RandomAccessFile f = new RandomAccessFile(file, "rw")) {
+			f.setLength(0);
+			f.setLength(length(extent));
+			f.writeInt(MAGIC);
+			f.writeInt(iX.includedFrom());
+			f.writeInt(iX.includedTo());
+			f.writeInt(iY.includedFrom());
+			f.writeInt(iY.includedTo());
+
+			FileChannel channel = f.getChannel();
+			MappedByteBuffer mapping = channel.map(MapMode.READ_WRITE, 0, length(extent));
+			ShortBuffer samples = mapping.asShortBuffer();
+			for (int y = iY.includedFrom(); y <= iY.includedTo(); ++y) {
+				for (int x = iX.includedFrom(); x <= iX.includedTo(); ++x) {
+					samples.put(index(x - iX.includedFrom(), y - iY.includedFrom(), blocksX),
+							(short) Math.round(dem.elevationSample(x, y)));
+				}
+			}
+			mapping.force();
+			MappedBuffers.unmap(mapping);
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package ch.epfl.alpano.dem;
+
+import java.util.Objects;
+
+import ch.epfl.alpano.Interval2D;
+
+/**
+ * Composite elevation pyramid
+ * 
+ * @author Haitham Hammami (257479)
+ * @author Makki Fourati (247746)
+ */
+final class CompositeElevationPyramid implements ElevationPyramid {
+	private final ElevationPyramid pyramid1, pyramid2;
+	private final Interval2D extent;
+
+	/**
+	 * constructs a composite pyramid from two pyramids
+	 * 
+	 * @param pyramid1
+	 * @param pyramid2
+	 * @throws NullPointerException
+	 *             if one of the pyramids is null
+	 */
+	CompositeElevationPyramid(ElevationPyramid pyramid1, ElevationPyramid pyramid2) {
+		this.pyramid1 = Objects.requireNonNull(pyramid1);
+		this.pyramid2 = Objects.requireNonNull(pyramid2);
+		extent = pyramid1.extent().union(pyramid2.extent());
+	}
+
+	@Override
+	public Interval2D extent() {
+		return extent;
+	}
+
+	@Override
+	public double maxElevation(int xMin, int yMin, int xMax, int yMax) {
+		return Math.max(pyramid1.maxElevation(xMin, yMin, xMax, yMax),
+				pyramid2.maxElevation(xMin, yMin, xMax, yMax));
+	}
+}
@@ -0,0 +1,281 @@
+package ch.epfl.alpano.dem;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import ch.epfl.alpano.Interval1D;
+import ch.epfl.alpano.Interval2D;
+import ch.epfl.alpano.Preconditions;
+
+/**
+ * Compressed discrete elevation model: reads the samples of a file storing
+ * them in blocks of 64 x 64 samples, each sample being coded as the
+ * difference to its prediction from its west, south and south-west
+ * neighbours, with as many bits as the largest difference of its row needs.
+ * The blocks are decoded on demand into a small cache
+ *
+ * @author Haitham Hammami (257479)
+ * @author Makki Fourati (247746)
+ */
+public final class CompressedDiscreteElevationModel implements DiscreteElevationModel {
+	private static final int MAGIC = 0x414C505A;
+	private static final int BLOCK_BITS = 6;
+	private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+	private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+	private static final int DEFAULT_CACHED_BLOCKS = 256;
+	// magic number, extent and number of blocks
+	private static final int HEADER_BYTES = 6 * 4;
+
+	private final Interval2D extent;
+	private final int fromX, fromY, toX, toY;
+	private final int blocksX;
+	// offsets[b] is the position of the block b in the file, and
+	// offsets[b + 1] the position of its end
+	private final int[] offsets;
+	private MappedByteBuffer mapping;
+	// direct-mapped cache: the block b can only be in the entry b & cacheMask
+	private final AtomicReferenceArray<Block> cache;
+	private final int cacheMask;
+
+	/**
+	 * Decoded block
+	 */
+	private static final class Block {
+		private final int index;
+		private final short[] samples;
+
+		/**
+		 * @param index
+		 * @param samples
+		 */
+		Block(int index, short[] samples) {
+			this.index = index;
+			this.samples = samples;
+		}
+	}
+
+	/**
+	 * constructs the model of a file written by write, caching 256 blocks
+	 *
+	 * @param file
+	 * @throws IllegalArgumentException
+	 *             if the file cannot be read or is not a compressed elevation
+	 *             file
+	 */
+	public CompressedDiscreteElevationModel(File file) {
+		this(file, DEFAULT_CACHED_BLOCKS);
+	}
+
+	/**
+	 * constructs the model of a file written by write
+	 *
+	 * @param file
+	 * @param cachedBlocks
+	 *            the number of decoded blocks kept in memory, rounded up to a
+	 *            power of two
+	 * @throws IllegalArgumentException
+	 *             if the file cannot be read or is not a compressed elevation
+	 *             file, or if cachedBlocks is not between 1 and 2^20
+	 *             (1048576)
+	 */
+	public CompressedDiscreteElevationModel(File file, int cachedBlocks) {
+		Preconditions.checkArgument(cachedBlocks > 0 && cachedBlocks <= 1 << 20);
+		try (RandomAccessFile f = new RandomAccessFile(file, "r")) {
+			Preconditions.checkArgument(f.length() >= HEADER_BYTES && f.readInt() == MAGIC);
+			fromX = f.readInt();
+			toX = f.readInt();
+			fromY = f.readInt();
+			toY = f.readInt();
+			Preconditions.checkArgument(fromX <= toX && fromY <= toY);
+			extent = new Interval2D(new Interval1D(fromX, toX), new Interval1D(fromY, toY));
+			blocksX = blocks(extent.iX().size());
+			int blockCount = f.readInt();
+			Preconditions.checkArgument(blockCount == blocksX * blocks(extent.iY().size()));
+
+			mapping = f.getChannel().map(MapMode.READ_ONLY, 0, f.length());
+			offsets = new int[blockCount + 1];
+			mapping.position(HEADER_BYTES);
+			for (int b = 0; b <= blockCount; ++b)
+				offsets[b] = mapping.getInt();
+			Preconditions.checkArgument(offsets[blockCount] == f.length());
+		} catch (IOException | RuntimeException e) {
+			throw new IllegalArgumentException(e);
+		}
+		int cacheSize = Integer.highestOneBit(cachedBlocks - 1) << 1;
+		cacheSize = Math.max(1, cacheSize);
+		cache = new AtomicReferenceArray<>(cacheSize);
+		cacheMask = cacheSize - 1;
+	}
+
+	/**
+	 * @param size
+	 * @return the number of blocks needed to cover size samples
+	 */
+	private static int blocks(int size) {
+		return (size + BLOCK_MASK) >> BLOCK_BITS;
+	}
+
+	@Override
+	public Interval2D extent() {
+		return extent;
+	}
+
+	@Override
+	public double elevationSample(int x, int y) {
+		Preconditions.checkArgument(x >= fromX && x <= toX && y >= fromY && y <= toY);
+		x -= fromX;
+		y -= fromY;
+		int index = (y >> BLOCK_BITS) * blocksX + (x >> BLOCK_BITS);
+		Block block = cache.get(index & cacheMask);
+		if (block == null || block.index != index) {
+			// two threads may decode the same block, the last one is kept
+			block = new Block(index, decode(index));
+			cache.lazySet(index & cacheMask, block);
+		}
+		return block.samples[((y & BLOCK_MASK) << BLOCK_BITS) + (x & BLOCK_MASK)];
+	}
+
+	/**
+	 * @param index
+	 * @return the samples of the block of the given index, row by row from
+	 *         south to north
+	 */
+	private short[] decode(int index) {
+		ByteBuffer data = mapping;
+		short[] samples = new short[BLOCK_SIZE * BLOCK_SIZE];
+		int p = offsets[index];
+		for (int row = 0; row < samples.length; row += BLOCK_SIZE) {
+			// each row starts with the number of bits of its residuals
+			int bits = data.get(p++);
+			long mask = (1L << bits) - 1;
+			long acc = 0;
+			int accBits = 0;
+			for (int i = row; i < row + BLOCK_SIZE; ++i) {
+				while (accBits < bits) {
+					acc |= (data.get(p++) & 0xFFL) << accBits;
+					accBits += 8;
+				}
+				int zigzag = (int) (acc & mask);
+				acc >>>= bits;
+				accBits -= bits;
+				int residual = (zigzag >>> 1) ^ -(zigzag & 1);
+				samples[i] = (short) (prediction(samples, i) + residual);
+			}
+		}
+		return samples;
+	}
+
+	/**
+	 * @param samples
+	 *            the samples of a block, known up to index i excluded
+	 * @param i
+	 * @return the prediction of the sample of index i in the block
+	 */
+	private static int prediction(short[] samples, int i) {
+		int x = i & BLOCK_MASK;
+		if (i < BLOCK_SIZE)
+			return x == 0 ? 0 : samples[i - 1];
+		if (x == 0)
+			return samples[i - BLOCK_SIZE];
+		// the samples are assumed to lie on a plane
+		return samples[i - 1] + samples[i - BLOCK_SIZE] - samples[i - BLOCK_SIZE - 1];
+	}
+
+	/**
+	 * @param residual
+	 * @return the residual mapped to a natural number, the small negative
+	 *         residuals giving small numbers too
+	 */
+	private static int zigzag(int residual) {
+		return (residual << 1) ^ (residual >> 31);
+	}
+
+	/**
+	 * releases the mapping of the file at once. The samples of the model must
+	 * not be read anymore, nor be being read by another thread
+	 */
+	@Override
+	public void close() throws Exception {
+		if (mapping != null) {
+			MappedByteBuffer m = mapping;
+			mapping = null;
+			MappedBuffers.unmap(m);
+		}
+	}
+
+	/**
+	 * writes the samples of the DEM, rounded to the closest integer, to the
+	 * file in compressed blocks of 64 x 64 samples
+	 *
+	 * @param dem
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void write(DiscreteElevationModel dem, File file) throws IOException {
+		Interval2D extent = dem.extent();
+		Interval1D iX = extent.iX(), iY = extent.iY();
+		int blocksX = blocks(iX.size()), blocksY = blocks(iY.size());
+		int blockCount = blocksX * blocksY;
+
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		int[] offsets = new int[blockCount + 1];
+		int dataStart = HEADER_BYTES + 4 * (blockCount + 1);
+		short[] samples = new short[BLOCK_SIZE * BLOCK_SIZE];
+		int[] zigzags = new int[BLOCK_SIZE];
+		for (int b = 0; b < blockCount; ++b) {
+			offsets[b] = dataStart + data.size();
+			int x0 = iX.includedFrom() + (b % blocksX) * BLOCK_SIZE;
+			int y0 = iY.includedFrom() + (b / blocksX) * BLOCK_SIZE;
+			for (int i = 0; i < samples.length; ++i) {
+				// the samples beyond the extent repeat those of its edges
+				int x = Math.min(x0 + (i & BLOCK_MASK), iX.includedTo());
+				int y = Math.min(y0 + (i >> BLOCK_BITS), iY.includedTo());
+				samples[i] = (short) Math.round(dem.elevationSample(x, y));
+			}
+			for (int row = 0; row < samples.length; row += BLOCK_SIZE) {
+				int any = 0;
+				for (int i = row; i < row + BLOCK_SIZE; ++i) {
+					zigzags[i - row] = zigzag(samples[i] - prediction(samples, i));
+					any |= zigzags[i - row];
+				}
+				int bits = 32 - Integer.numberOfLeadingZeros(any);
+				data.write(bits);
+				// 64 values of the same number of bits fill whole bytes
+				long acc = 0;
+				int accBits = 0;
+				for (int zigzag : zigzags) {
+					acc |= (long) zigzag << accBits;
+					accBits += bits;
+					while (accBits >= 8) {
+						data.write((int) acc);
+						acc >>>= 8;
+						accBits -= 8;
+					}
+				}
+			}
+		}
+		offsets[blockCount] = dataStart + data.size();
+
+		try (DataOutputStream s = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)))) {
+			s.writeInt(MAGIC);
+			s.writeInt(iX.includedFrom());
+			s.writeInt(iX.includedTo());
+			s.writeInt(iY.includedFrom());
+			s.writeInt(iY.includedTo());
+			s.writeInt(blockCount);
+			for (int offset : offsets)
+				s.writeInt(offset);
+			data.writeTo(s);
+		}
+	}
+}
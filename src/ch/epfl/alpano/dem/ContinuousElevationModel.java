@@ -6,6 +6,8 @@ import java.util.Objects;
 import ch.epfl.alpano.GeoPoint;
 import ch.epfl.alpano.Math2;
 import ch.epfl.alpano.Distance;
+import ch.epfl.alpano.Interval2D;
+import ch.epfl.alpano.Preconditions;
 import ch.epfl.alpano.dem.DiscreteElevationModel;
 
 /**
@@ -16,7 +18,11 @@ import ch.epfl.alpano.dem.DiscreteElevationModel;
  */
 public final class ContinuousElevationModel {
 	private final DiscreteElevationModel dem;
+	// precomputed slopes of the samples of the dem, or null
+	private final DiscreteElevationModel slopes;
 	private final double NULL_ELEVATION = 0.0; // used for the dem's extension
+	// number of points of a batch whose samples are gathered together
+	private static final int BATCH_CHUNK = 256;
 	/**
 	 * distance between two vertically successive samples
 	 */
@@ -31,6 +37,23 @@ public final class ContinuousElevationModel {
 	public ContinuousElevationModel(DiscreteElevationModel dem) {
 		Objects.requireNonNull(dem);
 		this.dem = dem;
+		this.slopes = null;
+	}
+
+	/**
+	 * construct a continuous elevation model from a discrete one and the
+	 * precomputed slopes of its samples, such as a slope raster (or a union
+	 * of them), the slopes of the samples that are not in it or are not a
+	 * number being computed from the discrete model
+	 * 
+	 * @param dem
+	 * @param slopes
+	 * @throws NullPointerException
+	 */
+	public ContinuousElevationModel(DiscreteElevationModel dem,
+			DiscreteElevationModel slopes) {
+		this.dem = Objects.requireNonNull(dem);
+		this.slopes = Objects.requireNonNull(slopes);
 	}
 
 	/**
@@ -38,9 +61,19 @@ public final class ContinuousElevationModel {
 	 * @return the elevation of a point p using bilinear interpolation
 	 */
 	public double elevationAt(GeoPoint p) {
+		return elevationAt(p.longitude(), p.latitude());
+	}
+
+	/**
+	 * @param longitude
+	 * @param latitude
+	 * @return the elevation of the point of the given coordinates (in radians)
+	 *         using bilinear interpolation, without building a GeoPoint
+	 */
+	public double elevationAt(double longitude, double latitude) {
 
-		double x = DiscreteElevationModel.sampleIndex(p.longitude());
-		double y = DiscreteElevationModel.sampleIndex(p.latitude());
+		double x = DiscreteElevationModel.sampleIndex(longitude);
+		double y = DiscreteElevationModel.sampleIndex(latitude);
 
 		// round up and down x and y
 		int x0 = (int) Math.floor(x);
@@ -61,8 +94,18 @@ public final class ContinuousElevationModel {
 	 * @return the slope of a point p using bilinear interpolation
 	 */
 	public double slopeAt(GeoPoint p) {
-		double x = DiscreteElevationModel.sampleIndex(p.longitude());
-		double y = DiscreteElevationModel.sampleIndex(p.latitude());
+		return slopeAt(p.longitude(), p.latitude());
+	}
+
+	/**
+	 * @param longitude
+	 * @param latitude
+	 * @return the slope of the point of the given coordinates (in radians)
+	 *         using bilinear interpolation, without building a GeoPoint
+	 */
+	public double slopeAt(double longitude, double latitude) {
+		double x = DiscreteElevationModel.sampleIndex(longitude);
+		double y = DiscreteElevationModel.sampleIndex(latitude);
 
 		// round up and down x and y
 		int x0 = (int) Math.floor(x);
@@ -70,14 +113,175 @@ public final class ContinuousElevationModel {
 		int y0 = (int) Math.floor(y);
 		int y1 = y0 + 1;
 
-		double teta00 = demExtensionSlope(x0, y0);
-		double teta01 = demExtensionSlope(x0, y1);
-		double teta10 = demExtensionSlope(x1, y0);
-		double teta11 = demExtensionSlope(x1, y1);
+		double teta00 = slopeSample(x0, y0);
+		double teta01 = slopeSample(x0, y1);
+		double teta10 = slopeSample(x1, y0);
+		double teta11 = slopeSample(x1, y1);
 
 		return Math2.bilerp(teta00, teta10, teta01, teta11, x - x0, y - y0);
 	}
 
+	/**
+	 * computes both the elevation and the slope of a point, reading each of
+	 * the (at most) 9 samples they depend on once
+	 * 
+	 * @param longitude
+	 * @param latitude
+	 * @param elevationAndSlope
+	 *            the array in which the elevation and the slope of the point
+	 *            of the given coordinates (in radians) are stored, at the
+	 *            indices 0 and 1, with the values elevationAt and slopeAt
+	 *            return
+	 * @throws IllegalArgumentException
+	 *             if the array has less than 2 elements
+	 */
+	public void elevationAndSlopeAt(double longitude, double latitude,
+			double[] elevationAndSlope) {
+		Preconditions.checkArgument(elevationAndSlope.length >= 2);
+		double x = DiscreteElevationModel.sampleIndex(longitude);
+		double y = DiscreteElevationModel.sampleIndex(latitude);
+		int x0 = (int) Math.floor(x);
+		int y0 = (int) Math.floor(y);
+
+		double z00 = demExtensionElevation(x0, y0);
+		double z10 = demExtensionElevation(x0 + 1, y0);
+		double z01 = demExtensionElevation(x0, y0 + 1);
+		double z11 = demExtensionElevation(x0 + 1, y0 + 1);
+		elevationAndSlope[0] = Math2.bilerp(z00, z10, z01, z11, x - x0, y - y0);
+
+		double teta00, teta10, teta01, teta11;
+		if (slopes != null) {
+			teta00 = slopeSample(x0, y0);
+			teta10 = slopeSample(x0 + 1, y0);
+			teta01 = slopeSample(x0, y0 + 1);
+			teta11 = slopeSample(x0 + 1, y0 + 1);
+		} else {
+			double z20 = demExtensionElevation(x0 + 2, y0);
+			double z21 = demExtensionElevation(x0 + 2, y0 + 1);
+			double z02 = demExtensionElevation(x0, y0 + 2);
+			double z12 = demExtensionElevation(x0 + 1, y0 + 2);
+			teta00 = slope(z00, z10, z01);
+			teta10 = slope(z10, z20, z11);
+			teta01 = slope(z01, z11, z02);
+			teta11 = slope(z11, z21, z12);
+		}
+		elevationAndSlope[1] = Math2.bilerp(teta00, teta10, teta01, teta11, x - x0, y - y0);
+	}
+
+	/**
+	 * computes the elevations of several points, the elevation of the point
+	 * of coordinates (longitudes[i], latitudes[i]) being stored in
+	 * elevations[i], with the value elevationAt returns
+	 * 
+	 * @param longitudes
+	 * @param latitudes
+	 * @param elevations
+	 * @throws IllegalArgumentException
+	 *             if the arrays do not have the same length
+	 */
+	public void elevationsAt(double[] longitudes, double[] latitudes,
+			double[] elevations) {
+		elevationsAndSlopesAt(longitudes, latitudes, elevations, null);
+	}
+
+	/**
+	 * computes the elevations and the slopes of several points, like
+	 * elevationsAt, the slope of the point i being stored in pointSlopes[i]
+	 * with the value slopeAt returns. Whether the samples the points depend
+	 * on are in the DEM is checked once for all of them, the points that are
+	 * all close to each other being usually all inside it
+	 * 
+	 * @param longitudes
+	 * @param latitudes
+	 * @param elevations
+	 * @param pointSlopes
+	 *            the array in which the slopes are stored, or null if only
+	 *            the elevations are needed
+	 * @throws IllegalArgumentException
+	 *             if the arrays do not have the same length
+	 */
+	public void elevationsAndSlopesAt(double[] longitudes, double[] latitudes,
+			double[] elevations, double[] pointSlopes) {
+		int n = longitudes.length;
+		Preconditions.checkArgument(latitudes.length == n && elevations.length == n
+				&& (pointSlopes == null || pointSlopes.length == n));
+		if (n == 0)
+			return;
+
+		int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE;
+		int minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+		for (int i = 0; i < n; ++i) {
+			int x0 = (int) Math.floor(DiscreteElevationModel.sampleIndex(longitudes[i]));
+			int y0 = (int) Math.floor(DiscreteElevationModel.sampleIndex(latitudes[i]));
+			minX = Math.min(minX, x0);
+			maxX = Math.max(maxX, x0);
+			minY = Math.min(minY, y0);
+			maxY = Math.max(maxY, y0);
+		}
+		// the computed slopes need the samples two rows and columns further
+		int margin = pointSlopes == null || slopes != null ? 1 : 2;
+		Interval2D extent = dem.extent();
+		if (!extent.contains(minX, minY) || maxX > Integer.MAX_VALUE - margin
+				|| maxY > Integer.MAX_VALUE - margin
+				|| !extent.contains(maxX + margin, maxY + margin)) {
+			double[] elevationAndSlope = new double[2];
+			for (int i = 0; i < n; ++i) {
+				elevationAndSlopeAt(longitudes[i], latitudes[i], elevationAndSlope);
+				elevations[i] = elevationAndSlope[0];
+				if (pointSlopes != null)
+					pointSlopes[i] = elevationAndSlope[1];
+			}
+			return;
+		}
+
+		// the samples are gathered by chunks, then interpolated together
+		int chunk = Math.min(n, BATCH_CHUNK);
+		double[] x = new double[chunk], y = new double[chunk];
+		double[] z00 = new double[chunk], z10 = new double[chunk];
+		double[] z01 = new double[chunk], z11 = new double[chunk];
+		for (int from = 0; from < n; from += chunk) {
+			int length = Math.min(chunk, n - from);
+			for (int k = 0; k < length; ++k) {
+				double sX = DiscreteElevationModel.sampleIndex(longitudes[from + k]);
+				double sY = DiscreteElevationModel.sampleIndex(latitudes[from + k]);
+				int x0 = (int) Math.floor(sX);
+				int y0 = (int) Math.floor(sY);
+				x[k] = sX - x0;
+				y[k] = sY - y0;
+				z00[k] = dem.elevationSample(x0, y0);
+				z10[k] = dem.elevationSample(x0 + 1, y0);
+				z01[k] = dem.elevationSample(x0, y0 + 1);
+				z11[k] = dem.elevationSample(x0 + 1, y0 + 1);
+			}
+			Math2.bilerp(z00, z10, z01, z11, x, y, elevations, from, length);
+			if (pointSlopes == null)
+				continue;
+
+			for (int k = 0; k < length; ++k) {
+				int x0 = (int) Math.floor(DiscreteElevationModel.sampleIndex(longitudes[from + k]));
+				int y0 = (int) Math.floor(DiscreteElevationModel.sampleIndex(latitudes[from + k]));
+				if (slopes != null) {
+					z00[k] = slopeSample(x0, y0);
+					z10[k] = slopeSample(x0 + 1, y0);
+					z01[k] = slopeSample(x0, y0 + 1);
+					z11[k] = slopeSample(x0 + 1, y0 + 1);
+				} else {
+					double e20 = dem.elevationSample(x0 + 2, y0);
+					double e21 = dem.elevationSample(x0 + 2, y0 + 1);
+					double e02 = dem.elevationSample(x0, y0 + 2);
+					double e12 = dem.elevationSample(x0 + 1, y0 + 2);
+					// the elevations of the corners are replaced by their slopes
+					double e00 = z00[k], e10 = z10[k], e01 = z01[k], e11 = z11[k];
+					z00[k] = slope(e00, e10, e01);
+					z10[k] = slope(e10, e20, e11);
+					z01[k] = slope(e01, e11, e02);
+					z11[k] = slope(e11, e21, e12);
+				}
+			}
+			Math2.bilerp(z00, z10, z01, z11, x, y, pointSlopes, from, length);
+		}
+	}
+
 	/**
 	 * @param x
 	 * @param y
@@ -92,6 +296,21 @@ public final class ContinuousElevationModel {
 		}
 	}
 
+	/**
+	 * @param x
+	 * @param y
+	 * @return the precomputed slope of the sample if there is one, its slope
+	 *         computed from two close samples otherwise
+	 */
+	private double slopeSample(int x, int y) {
+		if (slopes != null && slopes.extent().contains(x, y)) {
+			double slope = slopes.elevationSample(x, y);
+			if (!Double.isNaN(slope))
+				return slope;
+		}
+		return demExtensionSlope(x, y);
+	}
+
 	/**
 	 * @param x
 	 * @param y
@@ -102,11 +321,24 @@ public final class ContinuousElevationModel {
 		double z = demExtensionElevation(x, y);
 		double zA = demExtensionElevation(x + 1, y);
 		double zB = demExtensionElevation(x, y + 1);
+		return slope(z, zA, zB);
+
+	}
+
+	/**
+	 * @param z
+	 *            the elevation of a sample
+	 * @param zA
+	 *            the elevation of its east neighbour
+	 * @param zB
+	 *            the elevation of its north neighbour
+	 * @return the slope of the sample
+	 */
+	private static double slope(double z, double zA, double zB) {
 		double deltaZA = zA - z;
 		double deltaZB = zB - z;
 
 		return Math.acos(dNS / (Math.sqrt(Math2.sq(deltaZA) + Math2.sq(deltaZB) + Math2.sq(dNS))));
-
 	}
 
 }
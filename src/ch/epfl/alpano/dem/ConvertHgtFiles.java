@@ -0,0 +1,32 @@
+package ch.epfl.alpano.dem;
+
+import java.io.File;
+
+/**
+ * Converts HGT files to blocked elevation files: each file given as argument
+ * is written next to it with the blk extension instead of hgt, or to a
+ * compressed elevation file with the hgz extension if the first argument is
+ * -compressed
+ *
+ * @author Haitham Hammami (257479)
+ * @author Makki Fourati (247746)
+ */
+final class ConvertHgtFiles {
+
+    public static void main(String[] args) throws Exception {
+        boolean compressed = args.length > 0 && args[0].equals("-compressed");
+        for (int i = compressed ? 1 : 0; i < args.length; ++i) {
+            File hgt = new File(args[i]);
+            File converted = new File(hgt.getParentFile(), hgt.getName()
+                    .replaceFirst("\\.hgt$", compressed ? ".hgz" : ".blk"));
+            try (DiscreteElevationModel dem = new HgtDiscreteElevationModel(hgt)) {
+                if (compressed)
+                    CompressedDiscreteElevationModel.write(dem, converted);
+                else
+                    BlockedDiscreteElevationModel.write(dem, converted);
+            }
+            System.out.println(hgt + " (" + hgt.length() + " bytes) -> "
+                    + converted + " (" + converted.length() + " bytes)");
+        }
+    }
+}
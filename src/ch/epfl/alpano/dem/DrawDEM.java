@@ -7,10 +7,10 @@ import static java.lang.Math.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 
 import javax.imageio.ImageIO;
 
-import ch.epfl.alpano.GeoPoint;
 import ch.epfl.alpano.Interval1D;
 import ch.epfl.alpano.Interval2D;
 /**
@@ -39,15 +39,18 @@ public final class DrawDEM {
       new BufferedImage(size, size, TYPE_INT_RGB);
     BufferedImage slI =
       new BufferedImage(size, size, TYPE_INT_RGB);
+    double[] lons = new double[size];
+    double[] lats = new double[size];
+    double[] els = new double[size];
+    double[] sls = new double[size];
+    for (int y = 0; y < size; ++y)
+      lats[y] = toRadians(y * scale);
     for (int x = 0; x < size; ++x) {
+      Arrays.fill(lons, toRadians(x * scale));
+      cDEM.elevationsAndSlopesAt(lons, lats, els, sls);
       for (int y = 0; y < size; ++y) {
-        GeoPoint p = new GeoPoint(toRadians(x * scale),
-                                  toRadians(y * scale));
-        double el = cDEM.elevationAt(p);
-        elI.setRGB(x, y, gray(el / 1000d));
-
-        double sl = cDEM.slopeAt(p);
-        slI.setRGB(x, y, gray(sl / (PI / 2d)));
+        elI.setRGB(x, y, gray(els[y] / 1000d));
+        slI.setRGB(x, y, gray(sls[y] / (PI / 2d)));
       }
     }
 
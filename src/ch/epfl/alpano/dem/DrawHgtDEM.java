@@ -10,8 +10,9 @@ import static java.lang.Math.*;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.Arrays;
+
 import javax.imageio.ImageIO;
-import ch.epfl.alpano.GeoPoint;
 
 final class DrawHgtDEM {
 	
@@ -33,13 +34,17 @@ final class DrawHgtDEM {
       BufferedImage i = new BufferedImage(IMAGE_SIZE,
                                           IMAGE_SIZE,
                                           TYPE_INT_RGB);
-      for (int x = 0; x < IMAGE_SIZE; ++x) {
-        double lon = ORIGIN_LON + x * step;
-        for (int y = 0; y < IMAGE_SIZE; ++y) {
-          double lat = ORIGIN_LAT + y * step;
-          GeoPoint p = new GeoPoint(lon, lat);
+      double[] lons = new double[IMAGE_SIZE];
+      double[] lats = new double[IMAGE_SIZE];
+      double[] els = new double[IMAGE_SIZE];
+      for (int x = 0; x < IMAGE_SIZE; ++x)
+        lons[x] = ORIGIN_LON + x * step;
+      for (int y = 0; y < IMAGE_SIZE; ++y) {
+        Arrays.fill(lats, ORIGIN_LAT + y * step);
+        cDEM.elevationsAt(lons, lats, els);
+        for (int x = 0; x < IMAGE_SIZE; ++x) {
           double el =
-            (cDEM.elevationAt(p) - MIN_ELEVATION)
+            (els[x] - MIN_ELEVATION)
             / (MAX_ELEVATION - MIN_ELEVATION);
           i.setRGB(x, IMAGE_SIZE - 1 - y, gray(el));
         }
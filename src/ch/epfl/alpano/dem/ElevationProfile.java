@@ -1,6 +1,5 @@
 package ch.epfl.alpano.dem;
 
-import java.util.ArrayList;
 import java.util.Objects;
 
 import ch.epfl.alpano.Azimuth;
@@ -19,7 +18,13 @@ public final class ElevationProfile {
 	private final GeoPoint origin;
 	private final double azimuth;
 	private final double length;
-	private final ArrayList<GeoPoint> samples;
+	// longitudes and latitudes of the samples, which are never packed in GeoPoints
+	private final double[] longitudes, latitudes;
+	// elevations sampled every elevationStep meters, or null if not precomputed
+	private final float[] elevations;
+	// maximum of the elevation samples from each one to the last one
+	private final float[] maxElevations;
+	private final double elevationStep;
 	private final static double SPACING = 4096;
 
 	/**
@@ -33,8 +38,29 @@ public final class ElevationProfile {
 	 * @throws IllegalArgumentException
 	 */
 	public ElevationProfile(ContinuousElevationModel elevationModel, GeoPoint origin, double azimuth, double length) {
+		this(elevationModel, origin, azimuth, length, 0);
+	}
+
+	/**
+	 * construct an elevation profile like the first constructor, which
+	 * moreover samples the elevation of the terrain once every elevationStep
+	 * meters. elevationAt then interpolates linearly between those samples
+	 * instead of querying the elevation model
+	 * 
+	 * @param elevationModel
+	 * @param origin
+	 * @param azimuth
+	 * @param length
+	 * @param elevationStep
+	 *            the step of the elevation samples, or 0 to query the
+	 *            elevation model on every call to elevationAt
+	 * @throws IllegalArgumentException
+	 */
+	public ElevationProfile(ContinuousElevationModel elevationModel, GeoPoint origin, double azimuth, double length,
+			double elevationStep) {
 
 		Preconditions.checkArgument(Azimuth.isCanonical(azimuth) && length > 0);
+		Preconditions.checkArgument(elevationStep >= 0);
 		Objects.requireNonNull(elevationModel);
 		Objects.requireNonNull(origin);
 
@@ -42,13 +68,18 @@ public final class ElevationProfile {
 		this.origin = origin;
 		this.azimuth = azimuth;
 		this.length = length;
+		this.elevationStep = elevationStep;
 
-		samples = new ArrayList<>();
+		// one more sample than needed so that the last interval is always
+		// closed, including the one of the last elevation sample
+		int nbSamples = (int) Math.floor((this.length + elevationStep) / SPACING) + 2;
+		longitudes = new double[nbSamples];
+		latitudes = new double[nbSamples];
 
 		double distance = 0.0;
 		double direction = Azimuth.toMath(this.azimuth);
 
-		for (int i = 0; i < (this.length / SPACING) + 1; ++i) {
+		for (int i = 0; i < nbSamples; ++i) {
 		        distance=i*SPACING;
 		        double angle=Distance.toRadians(distance);
 			double latitude = asin(sin(this.origin.latitude()) * cos(angle)
@@ -58,9 +89,34 @@ public final class ElevationProfile {
 			        + PI- asin(sin(direction)
 			        * sin(angle) / cos(latitude)))%PI2 - PI;
 
-			samples.add(new GeoPoint(longitude, latitude));
+			longitudes[i] = longitude;
+			latitudes[i] = latitude;
 		}
 
+		if (elevationStep > 0) {
+			int nbElevations = (int) Math.floor(this.length / elevationStep) + 2;
+			double[] sampleLongitudes = new double[nbElevations];
+			double[] sampleLatitudes = new double[nbElevations];
+			for (int i = 0; i < nbElevations; ++i) {
+				double x = i * elevationStep;
+				int sample = (int) Math.floor(x / SPACING);
+				double t = x / SPACING - sample;
+				sampleLongitudes[i] = longitudeAt(sample, t);
+				sampleLatitudes[i] = latitudeAt(sample, t);
+			}
+			double[] sampleElevations = new double[nbElevations];
+			elevationModel.elevationsAt(sampleLongitudes, sampleLatitudes, sampleElevations);
+			elevations = new float[nbElevations];
+			for (int i = 0; i < nbElevations; ++i)
+				elevations[i] = (float) sampleElevations[i];
+			maxElevations = new float[elevations.length];
+			maxElevations[elevations.length - 1] = elevations[elevations.length - 1];
+			for (int i = elevations.length - 2; i >= 0; --i)
+				maxElevations[i] = Math.max(elevations[i], maxElevations[i + 1]);
+		} else {
+			elevations = null;
+			maxElevations = null;
+		}
 	}
 
 	/** 
@@ -70,7 +126,28 @@ public final class ElevationProfile {
 	 */
 	public double elevationAt(double x) {
 		Preconditions.checkArgument(x >= 0.0 && x <= length);
-		return elevationModel.elevationAt(positionAt(x));
+		if (elevations != null) {
+			int i = (int) Math.floor(x / elevationStep);
+			return Math2.lerp(elevations[i], elevations[i + 1], x / elevationStep - i);
+		}
+		int sample = (int) Math.floor(x / SPACING);
+		double t = x / SPACING - sample;
+
+		return elevationModel.elevationAt(longitudeAt(sample, t), latitudeAt(sample, t));
+	}
+
+	/**
+	 * @param x
+	 * @return an upper bound of the elevation of the terrain located at x
+	 *         meters from the origin or further, which is the exact maximum
+	 *         for profiles whose elevation is sampled, and infinity otherwise
+	 * @throws IllegalArgumentException
+	 */
+	public double maxElevationFrom(double x) {
+		Preconditions.checkArgument(x >= 0.0 && x <= length);
+		if (maxElevations == null)
+			return Double.POSITIVE_INFINITY;
+		return maxElevations[(int) Math.floor(x / elevationStep)];
 	}
 
 	/**
@@ -80,16 +157,10 @@ public final class ElevationProfile {
 	 */
 	public GeoPoint positionAt(double x) {
 		Preconditions.checkArgument(x >= 0.0 && x <= length);
-		double longitude = 0.0;
-		double latitude = 0.0;
-		int sample1 = (int) Math.floor(x / SPACING);
-        int sample2 = sample1 + 1;
-
-        longitude = Math2.lerp(samples.get(sample1).longitude(), samples.get(sample2).longitude(),
-                x / SPACING - sample1);
-        latitude = Math2.lerp(samples.get(sample1).latitude(), samples.get(sample2).latitude(), x / SPACING - sample1);
+		int sample = (int) Math.floor(x / SPACING);
+		double t = x / SPACING - sample;
 
-        return new GeoPoint(longitude, latitude);
+		return new GeoPoint(longitudeAt(sample, t), latitudeAt(sample, t));
 	}
 
 	/**
@@ -99,6 +170,27 @@ public final class ElevationProfile {
 	 */
 	public double slopeAt(double x) {
 		Preconditions.checkArgument(x >= 0.0 && x <= length);
-		return elevationModel.slopeAt(positionAt(x));
+		int sample = (int) Math.floor(x / SPACING);
+		double t = x / SPACING - sample;
+
+		return elevationModel.slopeAt(longitudeAt(sample, t), latitudeAt(sample, t));
+	}
+
+	/**
+	 * @param sample
+	 * @param t
+	 * @return the longitude interpolated at t between the sample and the next one
+	 */
+	private double longitudeAt(int sample, double t) {
+		return Math2.lerp(longitudes[sample], longitudes[sample + 1], t);
+	}
+
+	/**
+	 * @param sample
+	 * @param t
+	 * @return the latitude interpolated at t between the sample and the next one
+	 */
+	private double latitudeAt(int sample, double t) {
+		return Math2.lerp(latitudes[sample], latitudes[sample + 1], t);
 	}
 }
@@ -0,0 +1,74 @@
+package ch.epfl.alpano.dem;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import ch.epfl.alpano.Interval2D;
+import ch.epfl.alpano.Preconditions;
+
+/**
+ * Elevation pyramid: bounds the maximum elevation of the samples of a
+ * discrete elevation model over rectangles of any size in constant time
+ * 
+ * @author Haitham Hammami (257479)
+ * @author Makki Fourati (247746)
+ */
+public interface ElevationPyramid {
+
+	/**
+	 * @return the extent of the pyramid
+	 */
+	public Interval2D extent();
+
+	/**
+	 * @param xMin
+	 * @param yMin
+	 * @param xMax
+	 * @param yMax
+	 * @return an upper bound of the elevation of the samples of the rectangle
+	 *         [xMin, xMax] x [yMin, yMax] that are contained in the extent, or
+	 *         negative infinity if there are none
+	 */
+	public double maxElevation(int xMin, int yMin, int xMax, int yMax);
+
+	/**
+	 * @param that
+	 * @return a composite pyramid representing the union of the two pyramids
+	 * @throws IllegalArgumentException
+	 */
+	public default ElevationPyramid union(ElevationPyramid that) {
+		Preconditions.checkArgument(this.extent().isUnionableWith(that.extent()));
+		return new CompositeElevationPyramid(this, that);
+	}
+
+	/**
+	 * @param dem
+	 * @return the pyramid of the given DEM
+	 */
+	public static ElevationPyramid of(DiscreteElevationModel dem) {
+		return new MaxElevationPyramid(dem);
+	}
+
+	/**
+	 * @param dem
+	 * @param file
+	 * @return the pyramid of the given DEM, read from the file if it was saved
+	 *         there for the same extent, or built and saved to the file
+	 *         otherwise
+	 * @throws UncheckedIOException
+	 *             if the pyramid cannot be saved
+	 */
+	public static ElevationPyramid of(DiscreteElevationModel dem, File file) {
+		MaxElevationPyramid pyramid = MaxElevationPyramid.read(file, dem.extent());
+		if (pyramid == null) {
+			pyramid = new MaxElevationPyramid(dem);
+			try {
+				pyramid.write(file);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return pyramid;
+	}
+}
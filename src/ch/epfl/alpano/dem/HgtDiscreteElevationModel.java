@@ -4,6 +4,7 @@ package ch.epfl.alpano.dem;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.MappedByteBuffer;
 import java.nio.ShortBuffer;
 import java.nio.channels.FileChannel.MapMode;
 
@@ -18,8 +19,14 @@ import ch.epfl.alpano.Preconditions;
  */
 public final class HgtDiscreteElevationModel implements DiscreteElevationModel {
 	private final Interval2D extent;
+	private MappedByteBuffer mapping;
 	private ShortBuffer buffer;
-	private final int FILE_LENGTH= 25934402;
+	// western and northern indices of the samples, the file storing the
+	// samples row by row from north to south
+	private final int fromX, toY;
+	private static final int ROW_LENGTH = SAMPLES_PER_DEGREE + 1;
+	// size in bytes of an HGT file of 3601 x 3601 samples
+	static final long FILE_LENGTH = 25934402;
 	
 	
 	/**
@@ -28,33 +35,48 @@ public final class HgtDiscreteElevationModel implements DiscreteElevationModel {
 	 * checks if a file's name is valid and constructs a buffer to read the file's values
 	 */
 	public HgtDiscreteElevationModel(File file) {
-		String s = file.getName();
+		extent = extentOf(file.getName());
+		Preconditions.checkArgument(extent != null);
+		fromX = extent.iX().includedFrom();
+		toY = extent.iY().includedTo();
 
 		try (FileInputStream is = new FileInputStream(file)) {
 			
-			Preconditions.checkArgument((s.length() == 11)
-			        && (s.charAt(0) == 'N' || s.charAt(0) == 'S')
-					&& (s.charAt(3) == 'E' || s.charAt(3) == 'W')
-					&& (s.substring(7).equals(".hgt")) 
-					&& (file.length() ==FILE_LENGTH)  
-					&& isNumeric(s.substring(1, 3))
-					&& isNumeric(s.substring(4, 7)));
-
-			buffer = is.getChannel().map(MapMode.READ_ONLY, 0, file.length()).asShortBuffer();
-			int longitude = Integer.parseInt(s.substring(4, 7)) * SAMPLES_PER_DEGREE;
-			if (s.charAt(0) == 'S')
-				longitude *= -1;
-			int latitude = Integer.parseInt(s.substring(1, 3)) * SAMPLES_PER_DEGREE;
-			if (s.charAt(3) == 'W')
-				latitude *= -1;
-			extent = new Interval2D(new Interval1D(longitude, longitude + SAMPLES_PER_DEGREE),
-					new Interval1D(latitude, latitude + SAMPLES_PER_DEGREE));
+			Preconditions.checkArgument(file.length() == FILE_LENGTH);
+
+			mapping = is.getChannel().map(MapMode.READ_ONLY, 0, file.length());
+			buffer = mapping.asShortBuffer();
 		} catch (IOException e) {
 			throw new IllegalArgumentException();
 		}
 
 	}
 
+	/**
+	 * @param s
+	 *            the name of a file
+	 * @return the extent of the samples of the HGT file of that name, or null
+	 *         if it is not a valid HGT file name
+	 */
+	static Interval2D extentOf(String s) {
+		if (!((s.length() == 11)
+		        && (s.charAt(0) == 'N' || s.charAt(0) == 'S')
+				&& (s.charAt(3) == 'E' || s.charAt(3) == 'W')
+				&& (s.substring(7).equals(".hgt")) 
+				&& isNumeric(s.substring(1, 3))
+				&& isNumeric(s.substring(4, 7))))
+			return null;
+
+		int longitude = Integer.parseInt(s.substring(4, 7)) * SAMPLES_PER_DEGREE;
+		if (s.charAt(3) == 'W')
+			longitude *= -1;
+		int latitude = Integer.parseInt(s.substring(1, 3)) * SAMPLES_PER_DEGREE;
+		if (s.charAt(0) == 'S')
+			latitude *= -1;
+		return new Interval2D(new Interval1D(longitude, longitude + SAMPLES_PER_DEGREE),
+				new Interval1D(latitude, latitude + SAMPLES_PER_DEGREE));
+	}
+
 	/**
 	 * @param str
 	 * @return true if the string is numeric
@@ -68,10 +90,17 @@ public final class HgtDiscreteElevationModel implements DiscreteElevationModel {
 		return true;
 	}
 
+	/**
+	 * releases the mapping of the file at once. The samples of the model must
+	 * not be read anymore, nor be being read by another thread
+	 */
 	@Override
 	public void close() throws Exception {
-
-		buffer = null;
+		if (mapping != null) {
+			buffer = null;
+			MappedBuffers.unmap(mapping);
+			mapping = null;
+		}
 	}
 
 	@Override
@@ -83,10 +112,70 @@ public final class HgtDiscreteElevationModel implements DiscreteElevationModel {
 	
 	@Override
 	public double elevationSample(int x, int y) {
-		Preconditions.checkArgument(extent().contains(x, y));
-		int x1 = x - extent().iX().includedFrom();
-		int y1 = y - extent().iY().includedTo();
+		Preconditions.checkArgument(x >= fromX && x < fromX + ROW_LENGTH
+				&& y <= toY && y > toY - ROW_LENGTH);
+		return buffer.get(x - fromX + (toY - y) * ROW_LENGTH);
+	}
+
+	/**
+	 * copies the samples (xMin, y) to (xMin + length - 1, y) to
+	 * samples[offset] to samples[offset + length - 1]
+	 * 
+	 * @param xMin
+	 * @param y
+	 * @param samples
+	 * @param offset
+	 * @param length
+	 * @throws IllegalArgumentException
+	 *             if the row is not contained in the extent
+	 * @throws IndexOutOfBoundsException
+	 *             if the array is too small
+	 */
+	public void readRow(int xMin, int y, short[] samples, int offset, int length) {
+		readBlock(xMin, y, length, 1, samples, offset);
+	}
+
+	/**
+	 * copies the samples of the rectangle of width x height samples whose
+	 * south-west corner is (xMin, yMin) to the array, row by row from south to
+	 * north: the sample (x, y) is copied to
+	 * samples[(y - yMin) * width + x - xMin]
+	 * 
+	 * @param xMin
+	 * @param yMin
+	 * @param width
+	 * @param height
+	 * @param samples
+	 * @throws IllegalArgumentException
+	 *             if the rectangle is not contained in the extent
+	 * @throws IndexOutOfBoundsException
+	 *             if the array is too small
+	 */
+	public void readBlock(int xMin, int yMin, int width, int height, short[] samples) {
+		readBlock(xMin, yMin, width, height, samples, 0);
+	}
 
-		return buffer.get(x1 - (SAMPLES_PER_DEGREE+1) * y1);
+	/**
+	 * @param xMin
+	 * @param yMin
+	 * @param width
+	 * @param height
+	 * @param samples
+	 * @param offset
+	 *            copies the block of samples to the array, from the offset on
+	 */
+	private void readBlock(int xMin, int yMin, int width, int height,
+			short[] samples, int offset) {
+		Preconditions.checkArgument(width >= 0 && height >= 0
+				&& xMin >= fromX && xMin + width <= fromX + ROW_LENGTH
+				&& yMin + height - 1 <= toY && yMin > toY - ROW_LENGTH);
+		if (offset < 0 || offset + width * height > samples.length)
+			throw new IndexOutOfBoundsException();
+		// the buffer's position is not shared with the other threads
+		ShortBuffer rows = buffer.duplicate();
+		for (int j = 0; j < height; ++j) {
+			rows.position(xMin - fromX + (toY - yMin - j) * ROW_LENGTH);
+			rows.get(samples, offset + j * width, width);
+		}
 	}
-}
\ No newline at end of file
+}
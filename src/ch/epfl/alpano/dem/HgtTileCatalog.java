@@ -0,0 +1,461 @@
+package ch.epfl.alpano.dem;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import ch.epfl.alpano.Interval2D;
+import ch.epfl.alpano.Preconditions;
+
+/**
+ * HGT tile catalog: discrete elevation model of all the HGT files of a
+ * directory, which maps a file only when one of its samples is first
+ * requested and keeps a bounded number of files mapped, closing the one that
+ * was used the least recently (approximately, see map) when another one has
+ * to be mapped. The samples of the mapped files are read without locking nor
+ * any atomic update of a shared counter: a removed file is only closed once
+ * none of the threads that could still be reading it is reading a sample.
+ * The catalog also provides the pyramid and the slopes of its tiles, which
+ * are read from the files saved next to the HGT files (or built and saved)
+ * when a tile is first used
+ *
+ * @author Haitham Hammami (257479)
+ * @author Makki Fourati (247746)
+ */
+public final class HgtTileCatalog implements DiscreteElevationModel {
+	private final Interval2D extent;
+	private final int columns, rows;
+	private final int originX, originY;
+	private final int maxMappedTiles;
+	// files[x + y * columns] is the file of the tile of the column x and the
+	// row y, or null if the directory does not contain it
+	private final File[] files;
+	// the mapped tiles, only changed with the lock held
+	private final AtomicReferenceArray<MappedTile> tiles;
+	private volatile int mappedTiles, loads;
+	private final Object lock = new Object();
+	// incremented, with the lock held, each time a tile is removed. It starts
+	// at 1, the epoch of a reader that is not reading being 0
+	private volatile long epoch = 1;
+	// the readers of the catalog, whose threads have read one of its samples
+	private final List<Reader> readers = new CopyOnWriteArrayList<>();
+	private final ThreadLocal<Reader> reader = ThreadLocal.withInitial(this::newReader);
+	// the tiles removed but not closed yet, only used with the lock held
+	private final List<MappedTile> removedTiles = new ArrayList<>();
+	// the pyramids of the tiles already read or built, which are small
+	private final AtomicReferenceArray<ElevationPyramid> pyramids;
+	private final Object pyramidLock = new Object();
+
+	/**
+	 * Mapped tile: a mapped HGT file, and the slopes of its samples once they
+	 * are used
+	 */
+	private static final class MappedTile {
+		private final HgtDiscreteElevationModel model;
+		// number of files the catalog had mapped when the tile was last used
+		private volatile int lastUse;
+		// the slopes of the samples of the tile, or null until they are used
+		private volatile SlopeRaster slopes;
+		// the epoch of the catalog once the tile was removed from it
+		private long removal;
+
+		/**
+		 * @param model
+		 * @param lastUse
+		 */
+		MappedTile(HgtDiscreteElevationModel model, int lastUse) {
+			this.model = model;
+			this.lastUse = lastUse;
+		}
+
+		/**
+		 * closes the HGT file and the slopes of the tile
+		 */
+		void close() {
+			try {
+				model.close();
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			if (slopes != null)
+				slopes.close();
+		}
+
+		/**
+		 * @param file
+		 * @return the slope raster of the tile, read from the file or computed
+		 *         and saved to it when it is first requested
+		 */
+		SlopeRaster slopes(File file) {
+			SlopeRaster s = slopes;
+			if (s == null) {
+				synchronized (this) {
+					s = slopes;
+					if (s == null)
+						slopes = s = SlopeRaster.of(model, file);
+				}
+			}
+			return s;
+		}
+	}
+
+	/**
+	 * Reader: a thread reading the samples of the catalog
+	 */
+	private static final class Reader {
+		private final Thread thread = Thread.currentThread();
+		// the epoch of the catalog when the thread started reading the sample
+		// it is reading, or 0 if it is not reading any
+		private volatile long epoch;
+	}
+
+	/**
+	 * constructs the catalog of the HGT files of a directory, without mapping
+	 * any of them
+	 *
+	 * @param directory
+	 * @param maxMappedTiles
+	 *            the maximum number of files mapped at the same time
+	 * @throws IllegalArgumentException
+	 *             if the directory does not contain any HGT file or if
+	 *             maxMappedTiles is not positive
+	 */
+	public HgtTileCatalog(File directory, int maxMappedTiles) {
+		Preconditions.checkArgument(maxMappedTiles > 0);
+		File[] directoryFiles = directory.listFiles();
+		Preconditions.checkArgument(directoryFiles != null);
+
+		Interval2D bounds = null;
+		for (File file : directoryFiles) {
+			Interval2D e = extentOf(file);
+			if (e != null)
+				bounds = bounds == null ? e
+						: new Interval2D(bounds.iX().boundingUnion(e.iX()),
+								bounds.iY().boundingUnion(e.iY()));
+		}
+		Preconditions.checkArgument(bounds != null);
+		extent = bounds;
+		originX = extent.iX().includedFrom();
+		originY = extent.iY().includedFrom();
+		columns = (extent.iX().size() - 1) / SAMPLES_PER_DEGREE;
+		rows = (extent.iY().size() - 1) / SAMPLES_PER_DEGREE;
+		this.maxMappedTiles = maxMappedTiles;
+
+		files = new File[columns * rows];
+		for (File file : directoryFiles) {
+			Interval2D e = extentOf(file);
+			if (e != null)
+				files[index(e.iX().includedFrom(), e.iY().includedFrom())] = file;
+		}
+		tiles = new AtomicReferenceArray<>(files.length);
+		pyramids = new AtomicReferenceArray<>(files.length);
+	}
+
+	/**
+	 * @param file
+	 * @return the extent of the file if it is an HGT file, null otherwise
+	 */
+	private static Interval2D extentOf(File file) {
+		return file.isFile()
+				&& file.length() == HgtDiscreteElevationModel.FILE_LENGTH
+						? HgtDiscreteElevationModel.extentOf(file.getName())
+						: null;
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return the index of the tile containing the sample (x,y)
+	 */
+	private int index(int x, int y) {
+		return column(x) + row(y) * columns;
+	}
+
+	/**
+	 * @param x
+	 * @return the column of the tiles containing the samples of index x
+	 */
+	private int column(int x) {
+		// the samples on the far edge of the catalog belong to the last tiles
+		return Math.min((x - originX) / SAMPLES_PER_DEGREE, columns - 1);
+	}
+
+	/**
+	 * @param y
+	 * @return the row of the tiles containing the samples of index y
+	 */
+	private int row(int y) {
+		return Math.min((y - originY) / SAMPLES_PER_DEGREE, rows - 1);
+	}
+
+	/**
+	 * @param i
+	 * @param extension
+	 * @return the file named like the HGT file of the tile of index i, with
+	 *         the given extension instead of hgt
+	 */
+	private File sibling(int i, String extension) {
+		String name = files[i].getName();
+		return new File(files[i].getParentFile(),
+				name.substring(0, name.lastIndexOf('.')) + extension);
+	}
+
+	@Override
+	public Interval2D extent() {
+		return extent;
+	}
+
+	@Override
+	public double elevationSample(int x, int y) {
+		Preconditions.checkArgument(extent.contains(x, y));
+		int i = index(x, y);
+		// the tiles missing from the directory are usually over the sea
+		if (files[i] == null)
+			return 0;
+
+		Reader r = startReading();
+		try {
+			return tile(i).model.elevationSample(x, y);
+		} finally {
+			r.epoch = 0;
+		}
+	}
+
+	/**
+	 * @return the reader of the current thread, marked as reading since the
+	 *         current epoch: the tiles it reads are not closed until its epoch
+	 *         is set back to 0
+	 */
+	private Reader startReading() {
+		Reader r = reader.get();
+		// the tiles removed from now on are removed after a later epoch
+		r.epoch = epoch;
+		return r;
+	}
+
+	/**
+	 * @return a new reader for the current thread, added to the readers
+	 */
+	private Reader newReader() {
+		Reader r = new Reader();
+		readers.add(r);
+		return r;
+	}
+
+	/**
+	 * @param i
+	 * @return the tile of index i, which must be in the directory, mapped if
+	 *         it is not and marked as used. Must be called by a reader
+	 */
+	private MappedTile tile(int i) {
+		MappedTile tile = tiles.get(i);
+		if (tile == null) {
+			synchronized (lock) {
+				tile = tiles.get(i);
+				if (tile == null)
+					tile = map(i);
+			}
+		}
+		// only written when it changes, to keep the cache line shared
+		int l = loads;
+		if (tile.lastUse != l)
+			tile.lastUse = l;
+		return tile;
+	}
+
+	/**
+	 * maps the tile of index i, after removing from the catalog the tile whose
+	 * last use is the oldest if there are already maxMappedTiles tiles mapped.
+	 * The uses are dated by the number of files mapped so far, so that they
+	 * are rarely written: the removed tile is one of those not used since the
+	 * oldest map, which approximates the least recently used one. Must be
+	 * called with the lock held
+	 *
+	 * @param i
+	 * @return the tile
+	 */
+	private MappedTile map(int i) {
+		if (mappedTiles == maxMappedTiles) {
+			int oldest = -1;
+			for (int j = 0; j < files.length; ++j) {
+				MappedTile t = tiles.get(j);
+				if (t != null && (oldest == -1 || t.lastUse < tiles.get(oldest).lastUse))
+					oldest = j;
+			}
+			remove(oldest);
+			closeRemovedTiles();
+		}
+		MappedTile tile = new MappedTile(new HgtDiscreteElevationModel(files[i]), loads);
+		tiles.set(i, tile);
+		++mappedTiles;
+		++loads;
+		return tile;
+	}
+
+	/**
+	 * removes the tile of index i from the catalog. It is closed by
+	 * closeRemovedTiles once the samples being read from it have been read.
+	 * Must be called with the lock held
+	 *
+	 * @param i
+	 */
+	private void remove(int i) {
+		MappedTile tile = tiles.get(i);
+		tiles.set(i, null);
+		--mappedTiles;
+		// a reader that starts reading after this epoch does not see the tile
+		epoch = tile.removal = epoch + 1;
+		removedTiles.add(tile);
+	}
+
+	/**
+	 * closes the removed tiles that no reader can be reading, those removed
+	 * at or before the epoch at which every reader that is reading started,
+	 * and forgets the readers of the threads that have terminated. The
+	 * current thread is not reading any of them, if it is reading it reads
+	 * the tile it is mapping. Must be called with the lock held
+	 */
+	private void closeRemovedTiles() {
+		long oldest = Long.MAX_VALUE;
+		for (Reader r : readers) {
+			long e = r.epoch;
+			if (e != 0 && r.thread != Thread.currentThread())
+				oldest = Math.min(oldest, e);
+			else if (!r.thread.isAlive())
+				readers.remove(r);
+		}
+		for (int j = removedTiles.size() - 1; j >= 0; --j) {
+			if (removedTiles.get(j).removal <= oldest)
+				removedTiles.remove(j).close();
+		}
+	}
+
+	/**
+	 * @param i
+	 * @return the pyramid of the tile of index i, which must be in the
+	 *         directory, read from the file saved next to it or built and
+	 *         saved there when it is first requested
+	 */
+	private ElevationPyramid tilePyramid(int i) {
+		ElevationPyramid p = pyramids.get(i);
+		if (p == null) {
+			synchronized (pyramidLock) {
+				p = pyramids.get(i);
+				if (p == null) {
+					Reader r = startReading();
+					try {
+						p = ElevationPyramid.of(tile(i).model, sibling(i, ".max"));
+					} finally {
+						r.epoch = 0;
+					}
+					pyramids.set(i, p);
+				}
+			}
+		}
+		return p;
+	}
+
+	/**
+	 * @return the pyramid of the catalog, whose tiles are read from the files
+	 *         saved next to the HGT files (with the max extension), or built
+	 *         and saved there, when they are first used. The tiles missing
+	 *         from the directory have a maximum elevation of 0
+	 */
+	public ElevationPyramid pyramid() {
+		return new ElevationPyramid() {
+			@Override
+			public Interval2D extent() {
+				return extent;
+			}
+
+			@Override
+			public double maxElevation(int xMin, int yMin, int xMax, int yMax) {
+				int x0 = Math.max(xMin, originX), x1 = Math.min(xMax, extent.iX().includedTo());
+				int y0 = Math.max(yMin, originY), y1 = Math.min(yMax, extent.iY().includedTo());
+				if (x0 > x1 || y0 > y1)
+					return Double.NEGATIVE_INFINITY;
+
+				double max = Double.NEGATIVE_INFINITY;
+				for (int row = row(y0); row <= row(y1); ++row) {
+					for (int column = column(x0); column <= column(x1); ++column) {
+						int i = column + row * columns;
+						max = Math.max(max, files[i] == null ? 0
+								: tilePyramid(i).maxElevation(x0, y0, x1, y1));
+					}
+				}
+				return max;
+			}
+		};
+	}
+
+	/**
+	 * @return the slopes of the samples of the catalog, whose tiles are read
+	 *         from the files saved next to the HGT files (with the slp
+	 *         extension), or computed and saved there, when they are first
+	 *         used. They are mapped and closed with the HGT files, and are
+	 *         not a number for the tiles missing from the directory and on
+	 *         the east and north edges of the tiles (see SlopeRaster)
+	 */
+	public DiscreteElevationModel slopes() {
+		return new DiscreteElevationModel() {
+			@Override
+			public Interval2D extent() {
+				return extent;
+			}
+
+			@Override
+			public double elevationSample(int x, int y) {
+				Preconditions.checkArgument(extent.contains(x, y));
+				int i = index(x, y);
+				if (files[i] == null)
+					return Double.NaN;
+				Reader r = startReading();
+				try {
+					return tile(i).slopes(sibling(i, ".slp")).elevationSample(x, y);
+				} finally {
+					r.epoch = 0;
+				}
+			}
+
+			/**
+			 * does nothing, the slopes being closed with the catalog
+			 */
+			@Override
+			public void close() {
+			}
+		};
+	}
+
+	/**
+	 * @return the number of files currently mapped by the catalog, not
+	 *         counting the removed ones that are still being read
+	 */
+	public int mappedTiles() {
+		return mappedTiles;
+	}
+
+	/**
+	 * removes all the tiles from the catalog and closes them, once the
+	 * samples being read from them have been read
+	 */
+	@Override
+	public void close() throws Exception {
+		synchronized (lock) {
+			for (int i = 0; i < files.length; ++i) {
+				if (tiles.get(i) != null)
+					remove(i);
+			}
+		}
+		// without the lock, which the readers may need to finish reading
+		for (;;) {
+			synchronized (lock) {
+				closeRemovedTiles();
+				if (removedTiles.isEmpty())
+					return;
+			}
+			Thread.yield();
+		}
+	}
+}
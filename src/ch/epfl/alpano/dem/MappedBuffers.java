@@ -0,0 +1,75 @@
+package ch.epfl.alpano.dem;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Mapped buffers: releases the mapping of a file as soon as it is not used
+ * anymore, instead of when the garbage collector collects its buffer
+ *
+ * @author Haitham Hammami (257479)
+ * @author Makki Fourati (247746)
+ */
+final class MappedBuffers {
+	// Unsafe.invokeCleaner from Java 9 on, or null
+	private static final Method INVOKE_CLEANER;
+	private static final Object UNSAFE;
+	// DirectBuffer.cleaner and Cleaner.clean up to Java 8, or null
+	private static final Method CLEANER, CLEAN;
+
+	static {
+		Method invokeCleaner = null, cleaner = null, clean = null;
+		Object unsafe = null;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			unsafe = theUnsafe.get(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			invokeCleaner = null;
+			try {
+				cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+				clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+			} catch (ReflectiveOperationException | RuntimeException e2) {
+				// the mappings are released by the garbage collector
+				cleaner = null;
+				clean = null;
+			}
+		}
+		INVOKE_CLEANER = invokeCleaner;
+		UNSAFE = unsafe;
+		CLEANER = cleaner;
+		CLEAN = clean;
+	}
+
+	/**
+	 * Mapped Buffers
+	 */
+	private MappedBuffers() {
+	}
+
+	/**
+	 * releases the mapping of the buffer, which (as well as its views) must
+	 * not be accessed anymore. If the running Java version does not allow it,
+	 * the mapping is released when the buffer is garbage collected
+	 *
+	 * @param buffer
+	 *            a buffer returned by FileChannel.map
+	 */
+	static void unmap(MappedByteBuffer buffer) {
+		try {
+			if (INVOKE_CLEANER != null)
+				INVOKE_CLEANER.invoke(UNSAFE, buffer);
+			else if (CLEANER != null) {
+				Object cleaner = CLEANER.invoke(buffer);
+				if (cleaner != null)
+					CLEAN.invoke(cleaner);
+			}
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// the mapping is released by the garbage collector
+		}
+	}
+}
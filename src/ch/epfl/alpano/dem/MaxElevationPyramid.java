@@ -0,0 +1,191 @@
+package ch.epfl.alpano.dem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import ch.epfl.alpano.Interval1D;
+import ch.epfl.alpano.Interval2D;
+
+/**
+ * Pyramid of the maximum elevations of square blocks of samples, whose size
+ * doubles from one level to the next
+ * 
+ * @author Haitham Hammami (257479)
+ * @author Makki Fourati (247746)
+ */
+final class MaxElevationPyramid implements ElevationPyramid {
+	// number of samples per side of the blocks of the first level
+	private static final int BLOCK_SIZE = 16;
+	private static final int MAGIC = 0x414C504D;
+	private final Interval2D extent;
+	// levels[l] contains the maxima of the blocks of BLOCK_SIZE << l samples
+	private final float[][] levels;
+	private final int[] widths;
+
+	/**
+	 * constructs the pyramid of a DEM
+	 * 
+	 * @param dem
+	 */
+	MaxElevationPyramid(DiscreteElevationModel dem) {
+		this(dem.extent(), firstLevel(dem));
+	}
+
+	/**
+	 * constructs a pyramid from its extent and its first level
+	 * 
+	 * @param extent
+	 * @param firstLevel
+	 */
+	private MaxElevationPyramid(Interval2D extent, float[] firstLevel) {
+		this.extent = extent;
+		int nbLevels = 1;
+		int maxSize = Math.max(extent.iX().size(), extent.iY().size());
+		while ((BLOCK_SIZE << (nbLevels - 1)) < maxSize)
+			++nbLevels;
+
+		levels = new float[nbLevels][];
+		widths = new int[nbLevels];
+		levels[0] = firstLevel;
+		widths[0] = blocks(extent.iX().size(), 0);
+		for (int l = 1; l < nbLevels; ++l) {
+			widths[l] = blocks(extent.iX().size(), l);
+			int height = blocks(extent.iY().size(), l);
+			int lowerHeight = blocks(extent.iY().size(), l - 1);
+			levels[l] = new float[widths[l] * height];
+			for (int by = 0; by < height; ++by) {
+				for (int bx = 0; bx < widths[l]; ++bx) {
+					float max = Float.NEGATIVE_INFINITY;
+					for (int y = 2 * by; y <= Math.min(2 * by + 1, lowerHeight - 1); ++y) {
+						for (int x = 2 * bx; x <= Math.min(2 * bx + 1, widths[l - 1] - 1); ++x)
+							max = Math.max(max, levels[l - 1][x + y * widths[l - 1]]);
+					}
+					levels[l][bx + by * widths[l]] = max;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param dem
+	 * @return the maxima of the blocks of the first level of the DEM's pyramid
+	 */
+	private static float[] firstLevel(DiscreteElevationModel dem) {
+		Interval1D iX = dem.extent().iX(), iY = dem.extent().iY();
+		int width = blocks(iX.size(), 0);
+		float[] level = new float[width * blocks(iY.size(), 0)];
+		Arrays.fill(level, Float.NEGATIVE_INFINITY);
+		for (int y = iY.includedFrom(); y <= iY.includedTo(); ++y) {
+			int by = (y - iY.includedFrom()) / BLOCK_SIZE;
+			for (int x = iX.includedFrom(); x <= iX.includedTo(); ++x) {
+				int i = (x - iX.includedFrom()) / BLOCK_SIZE + by * width;
+				level[i] = Math.max(level[i], roundedUp(dem.elevationSample(x, y)));
+			}
+		}
+		return level;
+	}
+
+	/**
+	 * @param size
+	 * @param level
+	 * @return the number of blocks of the given level needed to cover size
+	 *         samples
+	 */
+	private static int blocks(int size, int level) {
+		int blockSize = BLOCK_SIZE << level;
+		return (size + blockSize - 1) / blockSize;
+	}
+
+	/**
+	 * @param elevation
+	 * @return the smallest float greater or equal to the elevation
+	 */
+	private static float roundedUp(double elevation) {
+		float f = (float) elevation;
+		return f < elevation ? Math.nextUp(f) : f;
+	}
+
+	@Override
+	public Interval2D extent() {
+		return extent;
+	}
+
+	@Override
+	public double maxElevation(int xMin, int yMin, int xMax, int yMax) {
+		Interval1D iX = extent.iX(), iY = extent.iY();
+		int x0 = Math.max(xMin, iX.includedFrom()) - iX.includedFrom();
+		int x1 = Math.min(xMax, iX.includedTo()) - iX.includedFrom();
+		int y0 = Math.max(yMin, iY.includedFrom()) - iY.includedFrom();
+		int y1 = Math.min(yMax, iY.includedTo()) - iY.includedFrom();
+		if (x0 > x1 || y0 > y1)
+			return Double.NEGATIVE_INFINITY;
+
+		// the rectangle is covered by at most 2 x 2 blocks of this level
+		int span = Math.max(x1 - x0, y1 - y0) + 1;
+		int l = 0;
+		while (l < levels.length - 1 && (BLOCK_SIZE << l) < span)
+			++l;
+
+		int blockSize = BLOCK_SIZE << l;
+		float max = Float.NEGATIVE_INFINITY;
+		for (int by = y0 / blockSize; by <= y1 / blockSize; ++by) {
+			for (int bx = x0 / blockSize; bx <= x1 / blockSize; ++bx)
+				max = Math.max(max, levels[l][bx + by * widths[l]]);
+		}
+		return max;
+	}
+
+	/**
+	 * @param file
+	 * @throws IOException
+	 *             writes the extent and the first level of the pyramid to the
+	 *             file
+	 */
+	void write(File file) throws IOException {
+		try (DataOutputStream s = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)))) {
+			s.writeInt(MAGIC);
+			s.writeInt(extent.iX().includedFrom());
+			s.writeInt(extent.iX().includedTo());
+			s.writeInt(extent.iY().includedFrom());
+			s.writeInt(extent.iY().includedTo());
+			for (float max : levels[0])
+				s.writeFloat(max);
+		}
+	}
+
+	/**
+	 * @param file
+	 * @param extent
+	 * @return the pyramid written to the file, or null if the file does not
+	 *         exist, cannot be read or contains a pyramid of another extent
+	 */
+	static MaxElevationPyramid read(File file, Interval2D extent) {
+		if (!file.isFile())
+			return null;
+		try (DataInputStream s = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)))) {
+			if (s.readInt() != MAGIC)
+				return null;
+			Interval2D fileExtent = new Interval2D(
+					new Interval1D(s.readInt(), s.readInt()),
+					new Interval1D(s.readInt(), s.readInt()));
+			if (!fileExtent.equals(extent))
+				return null;
+			float[] level = new float[blocks(extent.iX().size(), 0)
+					* blocks(extent.iY().size(), 0)];
+			for (int i = 0; i < level.length; ++i)
+				level[i] = s.readFloat();
+			return new MaxElevationPyramid(extent, level);
+		} catch (IOException | IllegalArgumentException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,178 @@
+package ch.epfl.alpano.dem;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel.MapMode;
+
+import ch.epfl.alpano.Distance;
+import ch.epfl.alpano.Interval1D;
+import ch.epfl.alpano.Interval2D;
+import ch.epfl.alpano.Math2;
+import ch.epfl.alpano.Preconditions;
+
+/**
+ * Slope raster: discrete model whose samples are the slopes (in radians) of
+ * the samples of a DEM, quantised on 16 bits and stored in a mapped file.
+ * The slope of a sample depends on its east and north neighbours, so the
+ * samples of the east and north edges of the DEM are not a number, their
+ * neighbours being outside of it
+ *
+ * @author Haitham Hammami (257479)
+ * @author Makki Fourati (247746)
+ */
+public final class SlopeRaster implements DiscreteElevationModel {
+	private static final int MAGIC = 0x414C5053;
+	private static final int HEADER_BYTES = 5 * 4;
+	// quantised value of the samples that are not a number
+	private static final int NAN = 0xFFFF;
+	private static final double STEP = Math.PI / 2 / (NAN - 1);
+	// distance between two vertically successive samples
+	private static final double DNS = Distance.toMeters(1 / SAMPLES_PER_RADIAN);
+
+	private final Interval2D extent;
+	private final int fromX, fromY, toX, toY, width;
+	private MappedByteBuffer mapping;
+	private ShortBuffer buffer;
+
+	/**
+	 * constructs the slope raster saved to a file
+	 *
+	 * @param file
+	 * @throws IOException
+	 *             if the file cannot be read
+	 * @throws IllegalArgumentException
+	 *             if it is not a slope raster
+	 */
+	private SlopeRaster(File file) throws IOException {
+		try (RandomAccessFile f = new RandomAccessFile(file, "r")) {
+			Preconditions.checkArgument(f.length() >= HEADER_BYTES && f.readInt() == MAGIC);
+			fromX = f.readInt();
+			toX = f.readInt();
+			fromY = f.readInt();
+			toY = f.readInt();
+			Preconditions.checkArgument(fromX <= toX && fromY <= toY);
+			extent = new Interval2D(new Interval1D(fromX, toX), new Interval1D(fromY, toY));
+			width = extent.iX().size();
+			Preconditions.checkArgument(f.length() == length(extent));
+			mapping = f.getChannel().map(MapMode.READ_ONLY, 0, f.length());
+			mapping.position(HEADER_BYTES);
+			buffer = mapping.slice().asShortBuffer();
+		}
+	}
+
+	/**
+	 * @param dem
+	 * @param file
+	 * @return the slope raster of the DEM, read from the file if it was saved
+	 *         there for the same extent, or computed and saved to the file
+	 *         otherwise
+	 * @throws UncheckedIOException
+	 *             if the raster cannot be saved
+	 */
+	public static SlopeRaster of(DiscreteElevationModel dem, File file) {
+		try {
+			SlopeRaster raster = new SlopeRaster(file);
+			if (raster.extent().equals(dem.extent()))
+				return raster;
+			raster.close();
+		} catch (IOException | IllegalArgumentException e) {
+			// the raster has not been saved yet
+		}
+		try {
+			write(dem, file);
+			return new SlopeRaster(file);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @param extent
+	 * @return the size in bytes of the file of the raster of the given extent
+	 */
+	private static long length(Interval2D extent) {
+		return HEADER_BYTES + 2L * extent.iX().size() * extent.iY().size();
+	}
+
+	/**
+	 * writes the quantised slopes of the samples of the DEM to the file
+	 *
+	 * @param dem
+	 * @param file
+	 * @throws IOException
+	 */
+	private static void write(DiscreteElevationModel dem, File file) throws IOException {
+		Interval2D extent = dem.extent();
+		Interval1D iX = extent.iX(), iY = extent.iY();
+		try (RandomAccessFile f = new RandomAccessFile(file, "rw")) {
+			f.setLength(0);
+			f.setLength(length(extent));
+			f.writeInt(MAGIC);
+			f.writeInt(iX.includedFrom());
+			f.writeInt(iX.includedTo());
+			f.writeInt(iY.includedFrom());
+			f.writeInt(iY.includedTo());
+
+			MappedByteBuffer mapping = f.getChannel().map(MapMode.READ_WRITE, 0, f.length());
+			mapping.position(HEADER_BYTES);
+			ShortBuffer slopes = mapping.slice().asShortBuffer();
+			for (int y = iY.includedFrom(); y <= iY.includedTo(); ++y) {
+				for (int x = iX.includedFrom(); x <= iX.includedTo(); ++x) {
+					int q = NAN;
+					if (x < iX.includedTo() && y < iY.includedTo())
+						q = (int) Math.round(slope(dem, x, y) / STEP);
+					slopes.put((short) q);
+				}
+			}
+			mapping.force();
+			MappedBuffers.unmap(mapping);
+		}
+	}
+
+	/**
+	 * @param dem
+	 * @param x
+	 * @param y
+	 * @return the slope of the sample (x, y) of the DEM, computed like
+	 *         ContinuousElevationModel does
+	 */
+	private static double slope(DiscreteElevationModel dem, int x, int y) {
+		double z = dem.elevationSample(x, y);
+		double deltaZA = dem.elevationSample(x + 1, y) - z;
+		double deltaZB = dem.elevationSample(x, y + 1) - z;
+		return Math.acos(DNS / (Math.sqrt(Math2.sq(deltaZA) + Math2.sq(deltaZB) + Math2.sq(DNS))));
+	}
+
+	@Override
+	public Interval2D extent() {
+		return extent;
+	}
+
+	/**
+	 * @return the slope of the sample, with an error of at most 1.2e-5
+	 *         radians, or NaN if it is on the east or north edge
+	 */
+	@Override
+	public double elevationSample(int x, int y) {
+		Preconditions.checkArgument(x >= fromX && x <= toX && y >= fromY && y <= toY);
+		int q = buffer.get(x - fromX + (y - fromY) * width) & 0xFFFF;
+		return q == NAN ? Double.NaN : q * STEP;
+	}
+
+	/**
+	 * releases the mapping of the file at once. The samples of the raster
+	 * must not be read anymore, nor be being read by another thread
+	 */
+	@Override
+	public void close() {
+		if (mapping != null) {
+			buffer = null;
+			MappedBuffers.unmap(mapping);
+			mapping = null;
+		}
+	}
+}
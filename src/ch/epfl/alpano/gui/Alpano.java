@@ -11,8 +11,7 @@ import ch.epfl.alpano.Azimuth;
 import ch.epfl.alpano.Panorama;
 import ch.epfl.alpano.PanoramaParameters;
 import ch.epfl.alpano.dem.ContinuousElevationModel;
-import ch.epfl.alpano.dem.DiscreteElevationModel;
-import ch.epfl.alpano.dem.HgtDiscreteElevationModel;
+import ch.epfl.alpano.dem.HgtTileCatalog;
 import ch.epfl.alpano.summit.GazetteerParser;
 import ch.epfl.alpano.summit.Summit;
 import javafx.application.Application;
@@ -61,6 +60,8 @@ public final class Alpano extends Application {
 
 	final static int TO_KLM = 1000;
 	final static int FRAME_SIZE = 80;
+	// maximum number of hgt files mapped at the same time
+	final static int MAX_MAPPED_TILES = 16;
 	private  int zoomScale = 4;
 	
 
@@ -74,8 +75,9 @@ public final class Alpano extends Application {
 
 		List<Summit> summits = summitsLoader(new File("alps.txt"));
 
-		ContinuousElevationModel cDEM = new ContinuousElevationModel(demLoader());
-		computerBean = new PanoramaComputerBean(cDEM, summits);
+		HgtTileCatalog catalog = demLoader();
+		ContinuousElevationModel cDEM = new ContinuousElevationModel(catalog, catalog.slopes());
+		computerBean = new PanoramaComputerBean(cDEM, catalog.pyramid(), summits);
 		Pane labelsPane = labelsPane();
 		//creating the observer's button
 		Button observerPositionButton = new Button("observer\n position");
@@ -252,22 +254,13 @@ return panoZoom;
 	}
 
 	/**
-	 * @return the elevation model constructed from 8 hgt files
+	 * @return the catalog of the hgt files of the working directory, which
+	 *         are only mapped once they are used, as are their pyramids and
+	 *         slopes, read from the files saved next to them or built and
+	 *         saved (by the threads computing the panoramas) on first use
 	 */
-	@SuppressWarnings("resource")
-	private DiscreteElevationModel demLoader() {
-		DiscreteElevationModel dem466 = new HgtDiscreteElevationModel(new File("N45E006.hgt"));
-		DiscreteElevationModel dem467 = new HgtDiscreteElevationModel(new File("N45E007.hgt"));
-		DiscreteElevationModel dem468 = new HgtDiscreteElevationModel(new File("N45E008.hgt"));
-		DiscreteElevationModel dem469 = new HgtDiscreteElevationModel(new File("N45E009.hgt"));
-		DiscreteElevationModel dem476 = new HgtDiscreteElevationModel(new File("N46E006.hgt"));
-		DiscreteElevationModel dem477 = new HgtDiscreteElevationModel(new File("N46E007.hgt"));
-		DiscreteElevationModel dem478 = new HgtDiscreteElevationModel(new File("N46E008.hgt"));
-		DiscreteElevationModel dem479 = new HgtDiscreteElevationModel(new File("N46E009.hgt"));
-		DiscreteElevationModel dem = ((dem466.union(dem476)).union(dem467.union(dem477)))
-				.union((dem468.union(dem478)).union(dem469.union(dem479)));
-		return dem;
-
+	private HgtTileCatalog demLoader() {
+		return new HgtTileCatalog(new File("."), MAX_MAPPED_TILES);
 	}
 
 	/**
@@ -298,11 +291,16 @@ return panoZoom;
 
 		// Mouse moving event
 		panoView.setOnMouseMoved(mouseEvent -> {
+			// the displayed panorama may lag behind the parameters while it is computed
 			Panorama p = computerBean.getPanorama();
-
-			int x = (int) Math.scalb(mouseEvent.getX(), computerBean.getParameters().superSamplingExponent());
-			int y = (int) Math.scalb(mouseEvent.getY(), computerBean.getParameters().superSamplingExponent());
-			PanoramaParameters parameters = computerBean.getParameters().panoramaParameters();
+			if (p == null)
+				return;
+			PanoramaParameters parameters = p.parameters();
+			double scale = parameters.width() / panoView.getLayoutBounds().getWidth();
+			int x = (int) (mouseEvent.getX() * scale);
+			int y = (int) (mouseEvent.getY() * scale);
+			if (x < 0 || x >= parameters.width() || y < 0 || y >= parameters.height())
+				return;
 			double azimuth = parameters.azimuthForX(x);
 			String longitude = String.format((Locale) null, "%.4f", toDegrees(p.longitudeAt(x, y)));
 			String latitude = String.format((Locale) null, "%.4f", toDegrees(p.latitudeAt(x, y)));
@@ -324,12 +322,18 @@ return panoZoom;
 		);
 		// Mouse clicking event
 		panoView.setOnMouseClicked(event -> {
-			int x = (int) Math.scalb(event.getX(), computerBean.getParameters().superSamplingExponent());
-			int y = (int) Math.scalb(event.getY(), computerBean.getParameters().superSamplingExponent());
+			Panorama p = computerBean.getPanorama();
+			if (p == null)
+				return;
+			double scale = p.parameters().width() / panoView.getLayoutBounds().getWidth();
+			int x = (int) (event.getX() * scale);
+			int y = (int) (event.getY() * scale);
+			if (x < 0 || x >= p.parameters().width() || y < 0 || y >= p.parameters().height())
+				return;
 			String longitude = String.format((Locale) null, "%.4f",
-					Math.toDegrees(computerBean.getPanorama().longitudeAt(x, y)));
+					Math.toDegrees(p.longitudeAt(x, y)));
 			String latitude = String.format((Locale) null, "%.4f",
-					Math.toDegrees(computerBean.getPanorama().latitudeAt(x, y)));
+					Math.toDegrees(p.latitudeAt(x, y)));
 			String qy = "mlat=" + latitude + "mlon=" + longitude;
 			String fg = "map=15/" + latitude + "/" + longitude;
 			try {
@@ -0,0 +1,106 @@
+package ch.epfl.alpano.gui;
+
+import ch.epfl.alpano.Preconditions;
+
+/**
+ * Colors packed in an int as 8 bits of opacity, red, green and blue, whose
+ * color components are premultiplied by their opacity. They are the same as
+ * those JavaFX stores for the corresponding Color, but are computed without
+ * allocating anything
+ *
+ * @author Haitham Hammami (257479)
+ * @author Makki Fourati (247746)
+ */
+public final class Argb {
+
+    /**
+     * Argb
+     */
+    private Argb() {
+    }
+
+    /**
+     * @param red
+     * @param green
+     * @param blue
+     * @param opacity
+     * @return the packed color of the given components, between 0 and 1
+     */
+    public static int premultiplied(double red, double green, double blue,
+            double opacity) {
+        int a = component(opacity);
+        if (a == 0)
+            return 0;
+        int r = component(red), g = component(green), b = component(blue);
+        if (a != 0xFF) {
+            r = (r * a + 127) / 255;
+            g = (g * a + 127) / 255;
+            b = (b * a + 127) / 255;
+        }
+        return a << 24 | r << 16 | g << 8 | b;
+    }
+
+    /**
+     * @param hue
+     *            in degrees, of any value
+     * @param saturation
+     * @param brightness
+     * @param opacity
+     * @return the packed color of the given hue, saturation, brightness and
+     *         opacity, like Color.hsb
+     * @throws IllegalArgumentException
+     *             if the saturation, the brightness or the opacity is not
+     *             between 0 and 1
+     */
+    public static int hsb(double hue, double saturation, double brightness,
+            double opacity) {
+        Preconditions.checkArgument(!(saturation < 0 || saturation > 1
+                || brightness < 0 || brightness > 1 || opacity < 0 || opacity > 1));
+        if (saturation == 0)
+            return premultiplied(brightness, brightness, brightness, opacity);
+
+        double h = (((hue % 360) + 360) % 360) / 360;
+        h = (h - Math.floor(h)) * 6;
+        double f = h - Math.floor(h);
+        double p = brightness * (1 - saturation);
+        double q = brightness * (1 - saturation * f);
+        double t = brightness * (1 - saturation * (1 - f));
+        // (int) h is between 0 and 5, and 0 if the hue is not a number
+        switch ((int) h) {
+        case 0:
+            return premultiplied(brightness, t, p, opacity);
+        case 1:
+            return premultiplied(q, brightness, p, opacity);
+        case 2:
+            return premultiplied(p, brightness, t, opacity);
+        case 3:
+            return premultiplied(p, q, brightness, opacity);
+        case 4:
+            return premultiplied(t, p, brightness, opacity);
+        default:
+            return premultiplied(brightness, p, q, opacity);
+        }
+    }
+
+    /**
+     * @param gray
+     * @param opacity
+     * @return the packed gray color of the given opacity, like Color.gray
+     * @throws IllegalArgumentException
+     *             if the gray or the opacity is not between 0 and 1
+     */
+    public static int gray(double gray, double opacity) {
+        Preconditions.checkArgument(!(gray < 0 || gray > 1 || opacity < 0 || opacity > 1));
+        return premultiplied(gray, gray, gray, opacity);
+    }
+
+    /**
+     * @param c
+     *            a color component between 0 and 1
+     * @return the component on 8 bits, rounded like JavaFX does
+     */
+    private static int component(double c) {
+        // JavaFX keeps the components of its colors as floats
+        return (int) Math.round((float) c * 255.0);
+    }
+}
@@ -0,0 +1,185 @@
+package ch.epfl.alpano.gui;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import javax.imageio.ImageIO;
+
+import ch.epfl.alpano.Panorama;
+import ch.epfl.alpano.Preconditions;
+
+/**
+ * ARGB image: pixels of a rendered panorama as premultiplied ARGB colors (see
+ * Argb), which are rendered and written to PNG files without JavaFX, so that
+ * panoramas can be rendered on computers without a display
+ *
+ * @author Haitham Hammami (257479)
+ * @author Makki Fourati (247746)
+ */
+public final class ArgbImage {
+    // number of rows of the bands rendered in parallel
+    private static final int BAND_HEIGHT = 8;
+
+    private final int width, height;
+    private final int[] pixels;
+
+    /**
+     * constructs an image from its pixels, row by row from the top
+     *
+     * @param width
+     * @param height
+     * @param pixels
+     * @throws IllegalArgumentException
+     *             if the width or the height is not positive or if the array
+     *             does not have width * height elements
+     */
+    public ArgbImage(int width, int height, int[] pixels) {
+        Preconditions.checkArgument(width > 0 && height > 0
+                && (long) width * height == pixels.length);
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels.clone();
+    }
+
+    /**
+     * constructs an image from pixels that are not shared
+     *
+     * @param pixels
+     * @param width
+     * @param height
+     */
+    private ArgbImage(int[] pixels, int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    /**
+     * @param panorama
+     * @param painter
+     * @return the image of the panorama painted by the painter
+     */
+    public static ArgbImage render(Panorama panorama, ImagePainter painter) {
+        int width = panorama.parameters().width();
+        int height = panorama.parameters().height();
+        int[] pixels = new int[width * height];
+        painter.fill(pixels, width, 0, height);
+        return new ArgbImage(pixels, width, height);
+    }
+
+    /**
+     * @param panorama
+     * @param painter
+     * @return the image render returns, whose bands of rows are painted in
+     *         parallel in the common fork-join pool
+     */
+    public static ArgbImage renderInParallel(Panorama panorama,
+            ImagePainter painter) {
+        return renderInParallel(panorama, painter, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param panorama
+     * @param painter
+     * @param pool
+     * @return the image render returns, whose bands of rows are painted in
+     *         parallel in the given pool, which is safe since the painters
+     *         of a panorama have no side effect
+     * @throws NullPointerException
+     */
+    public static ArgbImage renderInParallel(Panorama panorama,
+            ImagePainter painter, ForkJoinPool pool) {
+        Objects.requireNonNull(pool);
+        int width = panorama.parameters().width();
+        int height = panorama.parameters().height();
+        int[] pixels = new int[width * height];
+        int bands = (height + BAND_HEIGHT - 1) / BAND_HEIGHT;
+
+        // a parallel stream started from a task of the pool runs in that pool
+        pool.submit(() -> IntStream.range(0, bands).parallel().forEach(i -> {
+            int fromY = i * BAND_HEIGHT;
+            int toY = Math.min(fromY + BAND_HEIGHT, height);
+            int[] band = new int[(toY - fromY) * width];
+            painter.fill(band, width, fromY, toY);
+            System.arraycopy(band, 0, pixels, fromY * width, band.length);
+        })).join();
+
+        return new ArgbImage(pixels, width, height);
+    }
+
+    /**
+     * @return the width of the image
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * @return the height of the image
+     */
+    public int height() {
+        return height;
+    }
+
+    /**
+     * @param x
+     * @param y
+     * @return the premultiplied ARGB color of the pixel (x,y)
+     * @throws IndexOutOfBoundsException
+     */
+    public int argbAt(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height)
+            throw new IndexOutOfBoundsException();
+        return pixels[x + y * width];
+    }
+
+    /**
+     * @return a copy of the pixels of the image, row by row from the top
+     */
+    public int[] pixels() {
+        return pixels.clone();
+    }
+
+    /**
+     * @return the pixels of the image, which are not copied and must not be
+     *         modified
+     */
+    int[] pixelArray() {
+        return pixels;
+    }
+
+    /**
+     * writes the image to a stream in the PNG format, with ImageIO, its
+     * colors being divided by their opacity
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void writePng(OutputStream out) throws IOException {
+        BufferedImage image = new BufferedImage(width, height,
+                BufferedImage.TYPE_INT_ARGB_PRE);
+        image.getRaster().setDataElements(0, 0, width, height, pixels);
+        image.coerceData(false);
+        if (!ImageIO.write(image, "png", out))
+            throw new IOException("no PNG writer");
+    }
+
+    /**
+     * writes the image to a PNG file
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void writePng(File file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            writePng(out);
+        }
+    }
+}
@@ -2,6 +2,7 @@
 package ch.epfl.alpano.gui;
 
 import ch.epfl.alpano.Panorama;
+import ch.epfl.alpano.Preconditions;
 import static java.lang.Math.max;
 
 import static java.lang.Math.min;
@@ -22,6 +23,29 @@ public interface ChannelPainter {
      */
     float valueAt(int x, int y);
 
+    /**
+     * fills the values of the rows fromY (included) to toY (excluded) of an
+     * image of the given width, the value of the pixel (x,y) being stored at
+     * the index x + (y - fromY) * width of the array. The painters built by the
+     * methods of this interface compute each of their stages on all the
+     * pixels at once, in one loop, instead of one pixel at a time
+     * 
+     * @param values
+     * @param width
+     * @param fromY
+     * @param toY
+     * @throws IllegalArgumentException
+     *             if the rows are not in the array
+     */
+    public default void fill(float[] values, int width, int fromY, int toY) {
+        Preconditions.checkArgument(width > 0 && 0 <= fromY && fromY <= toY
+                && (long) (toY - fromY) * width <= values.length);
+        for (int y = fromY; y < toY; ++y) {
+            for (int x = 0; x < width; ++x)
+                values[x + (y - fromY) * width] = valueAt(x, y);
+        }
+    }
+
     /**
      * @param pano
      * @return the distance to the furthest neighbor of a pixel
@@ -43,8 +67,20 @@ public interface ChannelPainter {
      *         (x,y)
      */
     public default ChannelPainter add(float f) {
-        return (x, y) -> this.valueAt(x, y) + f;
-
+        ChannelPainter source = this;
+        return new ChannelPainter() {
+            @Override
+            public float valueAt(int x, int y) {
+                return source.valueAt(x, y) + f;
+            }
+
+            @Override
+            public void fill(float[] values, int width, int fromY, int toY) {
+                source.fill(values, width, fromY, toY);
+                for (int i = 0; i < (toY - fromY) * width; ++i)
+                    values[i] += f;
+            }
+        };
     }
 
     /**
@@ -53,8 +89,20 @@ public interface ChannelPainter {
      *         located in (x,y)
      */
     public default ChannelPainter mul(float f) {
-        return (x, y) -> this.valueAt(x, y) * f;
-
+        ChannelPainter source = this;
+        return new ChannelPainter() {
+            @Override
+            public float valueAt(int x, int y) {
+                return source.valueAt(x, y) * f;
+            }
+
+            @Override
+            public void fill(float[] values, int width, int fromY, int toY) {
+                source.fill(values, width, fromY, toY);
+                for (int i = 0; i < (toY - fromY) * width; ++i)
+                    values[i] *= f;
+            }
+        };
     }
 
     /**
@@ -63,8 +111,20 @@ public interface ChannelPainter {
      *         located in (x,y)
      */
     public default ChannelPainter sub(float f) {
-        return (x, y) -> this.valueAt(x, y) - f;
-
+        ChannelPainter source = this;
+        return new ChannelPainter() {
+            @Override
+            public float valueAt(int x, int y) {
+                return source.valueAt(x, y) - f;
+            }
+
+            @Override
+            public void fill(float[] values, int width, int fromY, int toY) {
+                source.fill(values, width, fromY, toY);
+                for (int i = 0; i < (toY - fromY) * width; ++i)
+                    values[i] -= f;
+            }
+        };
     }
 
     /**
@@ -73,8 +133,20 @@ public interface ChannelPainter {
      *         (x,y)
      */
     public default ChannelPainter div(float f) {
-        return (x, y) -> this.valueAt(x, y) / f;
-
+        ChannelPainter source = this;
+        return new ChannelPainter() {
+            @Override
+            public float valueAt(int x, int y) {
+                return source.valueAt(x, y) / f;
+            }
+
+            @Override
+            public void fill(float[] values, int width, int fromY, int toY) {
+                source.fill(values, width, fromY, toY);
+                for (int i = 0; i < (toY - fromY) * width; ++i)
+                    values[i] /= f;
+            }
+        };
     }
 
     /**
@@ -83,28 +155,80 @@ public interface ChannelPainter {
      *         value
      */
     public default ChannelPainter map(DoubleUnaryOperator f) {
-        return (x, y) -> (float) f.applyAsDouble((double) valueAt(x, y));
+        ChannelPainter source = this;
+        return new ChannelPainter() {
+            @Override
+            public float valueAt(int x, int y) {
+                return (float) f.applyAsDouble((double) source.valueAt(x, y));
+            }
+
+            @Override
+            public void fill(float[] values, int width, int fromY, int toY) {
+                source.fill(values, width, fromY, toY);
+                for (int i = 0; i < (toY - fromY) * width; ++i)
+                    values[i] = (float) f.applyAsDouble((double) values[i]);
+            }
+        };
     }
 
     /**
      * @return the clamping of the value of (x,y) between 1 and 0
      */
     public default ChannelPainter clamped() {
-        return (x, y) -> max(0, min(this.valueAt(x, y), 1));
+        ChannelPainter source = this;
+        return new ChannelPainter() {
+            @Override
+            public float valueAt(int x, int y) {
+                return max(0, min(source.valueAt(x, y), 1));
+            }
+
+            @Override
+            public void fill(float[] values, int width, int fromY, int toY) {
+                source.fill(values, width, fromY, toY);
+                for (int i = 0; i < (toY - fromY) * width; ++i)
+                    values[i] = max(0, min(values[i], 1));
+            }
+        };
     }
 
     /**
      * @return the inversion relative to 1 of the value of (x,y)
      */
     public default ChannelPainter inverted() {
-        return (x, y) -> 1 - this.valueAt(x, y);
+        ChannelPainter source = this;
+        return new ChannelPainter() {
+            @Override
+            public float valueAt(int x, int y) {
+                return 1 - source.valueAt(x, y);
+            }
+
+            @Override
+            public void fill(float[] values, int width, int fromY, int toY) {
+                source.fill(values, width, fromY, toY);
+                for (int i = 0; i < (toY - fromY) * width; ++i)
+                    values[i] = 1 - values[i];
+            }
+        };
     }
 
     /**
      * @return the cycled value relative to 1 of the value (x,y)
      */
     public default ChannelPainter cycle() {
-        return (x, y) -> this.valueAt(x, y) % 1;
+        ChannelPainter source = this;
+        return new ChannelPainter() {
+            @Override
+            public float valueAt(int x, int y) {
+                return source.valueAt(x, y) % 1;
+            }
+
+            @Override
+            public void fill(float[] values, int width, int fromY, int toY) {
+                source.fill(values, width, fromY, toY);
+                for (int i = 0; i < (toY - fromY) * width; ++i)
+                    values[i] %= 1;
+            }
+        };
     }
 
 }
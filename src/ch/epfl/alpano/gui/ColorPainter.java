@@ -0,0 +1,69 @@
+package ch.epfl.alpano.gui;
+
+import java.util.Objects;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Color painter: image painter whose colors are JavaFX colors, which adapts
+ * image painters to JavaFX and the other way around
+ * 
+ * @author Haitham Hammami (257479)
+ * @author Makki Fourati (247746)
+ */
+@FunctionalInterface
+public interface ColorPainter extends ImagePainter {
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return the color of the pixel located at (x,y)
+	 */
+	Color colorAt(int x, int y);
+
+	@Override
+	public default int argbAt(int x, int y) {
+		Color c = colorAt(x, y);
+		return Argb.premultiplied(c.getRed(), c.getGreen(), c.getBlue(), c.getOpacity());
+	}
+
+	/**
+	 * @param painter
+	 * @return a color painter whose colors are those of the image painter,
+	 *         which it uses to fill images
+	 * @throws NullPointerException
+	 */
+	static ColorPainter of(ImagePainter painter) {
+		Objects.requireNonNull(painter);
+		return new ColorPainter() {
+			@Override
+			public Color colorAt(int x, int y) {
+				return color(painter.argbAt(x, y));
+			}
+
+			@Override
+			public int argbAt(int x, int y) {
+				return painter.argbAt(x, y);
+			}
+
+			@Override
+			public void fill(int[] pixels, int width, int fromY, int toY) {
+				painter.fill(pixels, width, fromY, toY);
+			}
+		};
+	}
+
+	/**
+	 * @param argb
+	 *            a premultiplied ARGB color
+	 * @return the corresponding JavaFX color
+	 */
+	static Color color(int argb) {
+		int a = argb >>> 24;
+		if (a == 0)
+			return Color.color(0, 0, 0, 0);
+		return Color.color(Math.min(1, ((argb >>> 16) & 0xFF) / (double) a),
+				Math.min(1, ((argb >>> 8) & 0xFF) / (double) a),
+				Math.min(1, (argb & 0xFF) / (double) a), a / 255d);
+	}
+}
@@ -1,9 +1,11 @@
 package ch.epfl.alpano.gui;
 
-import javafx.scene.paint.Color;
+import ch.epfl.alpano.Panorama;
+import ch.epfl.alpano.Preconditions;
 
 /**
- * Image painter
+ * Image painter: paints the pixels of an image as premultiplied ARGB colors
+ * (see Argb), without JavaFX. ColorPainter adapts it to JavaFX colors
  * 
  * @author Haitham Hammami (257479)
  * @author Makki Fourati (247746)
@@ -13,9 +15,49 @@ public interface ImagePainter {
 	/**
 	 * @param x
 	 * @param y
-	 * @return the color of the pixel located at (x,y)
+	 * @return the premultiplied ARGB color of the pixel located at (x,y)
 	 */
-	Color colorAt(int x, int y);
+	int argbAt(int x, int y);
+
+	/**
+	 * fills the colors of the rows fromY (included) to toY (excluded) of an
+	 * image of the given width, as premultiplied ARGB (see Argb), the color
+	 * of the pixel (x,y) being stored at the index x + (y - fromY) * width of
+	 * the array. The painters built by the methods of this interface fill
+	 * their channels first
+	 * 
+	 * @param pixels
+	 * @param width
+	 * @param fromY
+	 * @param toY
+	 * @throws IllegalArgumentException
+	 *             if the rows are not in the array
+	 */
+	public default void fill(int[] pixels, int width, int fromY, int toY) {
+		Preconditions.checkArgument(width > 0 && 0 <= fromY && fromY <= toY
+				&& (long) (toY - fromY) * width <= pixels.length);
+		for (int y = fromY; y < toY; ++y) {
+			for (int x = 0; x < width; ++x)
+				pixels[x + (y - fromY) * width] = argbAt(x, y);
+		}
+	}
+
+	/**
+	 * @param p
+	 * @return the image painter of the panoramas of the application, whose
+	 *         hue and saturation depend on the distance, whose brightness
+	 *         depends on the slope and whose sky is transparent
+	 */
+	static ImagePainter panorama(Panorama p) {
+		ChannelPainter distance = p::distanceAt;
+		ChannelPainter slope = p::slopeAt;
+		ChannelPainter opacity = distance.map(d -> d == Float.POSITIVE_INFINITY ? 0 : 1);
+		ChannelPainter h = distance.div(100000f).cycle().mul(360f);
+		ChannelPainter s = distance.div(200000f).clamped().inverted();
+		ChannelPainter b = slope.mul(2f).div((float) Math.PI).inverted().mul(0.7f).add(0.3f);
+
+		return hsb(h, s, b, opacity);
+	}
 
 	/**
 	 * @param t
@@ -26,10 +68,25 @@ public interface ImagePainter {
 	 *         representation
 	 */
 	static ImagePainter hsb(ChannelPainter t, ChannelPainter s, ChannelPainter l, ChannelPainter o) {
-		return (x, y) -> {
-			return Color.hsb((double) t.valueAt(x, y), (double) s.valueAt(x, y), (double) l.valueAt(x, y),
-					(double) o.valueAt(x, y));
+		return new ImagePainter() {
+			@Override
+			public int argbAt(int x, int y) {
+				return Argb.hsb(t.valueAt(x, y), s.valueAt(x, y), l.valueAt(x, y),
+						o.valueAt(x, y));
+			}
 
+			@Override
+			public void fill(int[] pixels, int width, int fromY, int toY) {
+				int size = (toY - fromY) * width;
+				float[] hues = new float[size], saturations = new float[size];
+				float[] brightnesses = new float[size], opacities = new float[size];
+				t.fill(hues, width, fromY, toY);
+				s.fill(saturations, width, fromY, toY);
+				l.fill(brightnesses, width, fromY, toY);
+				o.fill(opacities, width, fromY, toY);
+				for (int i = 0; i < size; ++i)
+					pixels[i] = Argb.hsb(hues[i], saturations[i], brightnesses[i], opacities[i]);
+			}
 		};
 	}
 
@@ -39,8 +96,21 @@ public interface ImagePainter {
 	 * @return a gray image painter using 2 channels
 	 */
 	static ImagePainter gray(ChannelPainter g, ChannelPainter o) {
-		return (x, y) -> {
-			return Color.gray((double) g.valueAt(x, y), (double) o.valueAt(x, y));
+		return new ImagePainter() {
+			@Override
+			public int argbAt(int x, int y) {
+				return Argb.gray(g.valueAt(x, y), o.valueAt(x, y));
+			}
+
+			@Override
+			public void fill(int[] pixels, int width, int fromY, int toY) {
+				int size = (toY - fromY) * width;
+				float[] grays = new float[size], opacities = new float[size];
+				g.fill(grays, width, fromY, toY);
+				o.fill(opacities, width, fromY, toY);
+				for (int i = 0; i < size; ++i)
+					pixels[i] = Argb.gray(grays[i], opacities[i]);
+			}
 		};
 	}
 }
@@ -1,6 +1,7 @@
 
 package ch.epfl.alpano.gui;
 
+import javafx.application.Platform;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.ReadOnlyObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
@@ -9,12 +10,20 @@ import javafx.collections.ObservableList;
 import javafx.scene.image.Image;
 
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import ch.epfl.alpano.Panorama;
 import ch.epfl.alpano.PanoramaComputer;
+import ch.epfl.alpano.PanoramaParameters;
+import ch.epfl.alpano.RootRefiner;
 import ch.epfl.alpano.dem.ContinuousElevationModel;
+import ch.epfl.alpano.dem.ElevationPyramid;
 import ch.epfl.alpano.summit.Summit;
 import javafx.scene.Node;
 /**
@@ -25,6 +34,7 @@ import javafx.scene.Node;
  */
 public final  class PanoramaComputerBean {
     private ContinuousElevationModel cem;
+    private PanoramaComputer computer;
     private Labelizer labelizer;
     private ObjectProperty<Panorama> panorama = new SimpleObjectProperty<>();
     private ObjectProperty<PanoramaUserParameters> userParameters = new SimpleObjectProperty<>();
@@ -32,7 +42,17 @@ public final  class PanoramaComputerBean {
     private ObservableList<Node> labels=FXCollections.observableArrayList();
     private ObjectProperty<ObservableList<Node>> nodes = new SimpleObjectProperty<>(
             (FXCollections.unmodifiableObservableList(labels)));
-    
+    // background threads (daemons) on which the panoramas are computed and
+    // rendered, off the JavaFX thread
+    private final ForkJoinPool pool = new ForkJoinPool();
+    // the first pass computes an image 8 times smaller than the displayed one
+    private static final int COARSEST_SAMPLING_EXPONENT = -3;
+    // step of the sampled profiles of the passes previewing the panorama
+    private static final double PREVIEW_PROFILE_STEP = 64;
+    // latest computation and number of computations started, only accessed
+    // from the JavaFX thread
+    private CompletableFuture<Panorama> computation = CompletableFuture.completedFuture(null);
+    private long generation = 0;
 
     /**
      * @param cem
@@ -43,11 +63,26 @@ public final  class PanoramaComputerBean {
     public PanoramaComputerBean(ContinuousElevationModel cem,
             List<Summit> summits) {
         this.cem = Objects.requireNonNull(cem);
+        computer = new PanoramaComputer(cem).withRootRefiner(RootRefiner.brent());
         labelizer = new Labelizer(cem,  Objects.requireNonNull(summits));
         userParameters.addListener((prop, oldV, newV) -> synchronizeParameters(newV));
 
     }
 
+    /**
+     * @param cem
+     * @param pyramid
+     * @param summits
+     * constructs a panorama computer bean whose panoramas are computed using
+     * the pyramid of the elevation model
+     * throw NullPointerException
+     */
+    public PanoramaComputerBean(ContinuousElevationModel cem,
+            ElevationPyramid pyramid, List<Summit> summits) {
+        this(cem, summits);
+        computer = computer.withElevationPyramid(pyramid);
+    }
+
     /**
      * @return the parameters Proprety
      */
@@ -124,27 +159,50 @@ public final  class PanoramaComputerBean {
      * @return an Image Painter used in the graphic interface
      */
     private ImagePainter getImagePainter(Panorama p) {
-        ChannelPainter distance = p::distanceAt;
-        ChannelPainter slope = p::slopeAt;
-        ChannelPainter opacity = distance.map(d -> d == Float.POSITIVE_INFINITY ? 0 : 1);
-        ChannelPainter h = distance.div(100000f).cycle().mul(360f);
-        ChannelPainter s = distance.div(200000f).clamped().inverted();
-        ChannelPainter b = slope.mul(2f).div((float) Math.PI).inverted().mul(0.7f).add(0.3f);
-
-        return ImagePainter.hsb(h, s, b, opacity);
+        return ImagePainter.panorama(p);
     }
 
     /**
      * @param p
-     * synchronizes the computer bean so that it matches the parameters p
+     * synchronizes the computer bean so that it matches the parameters p: the
+     * panorama is first previewed at a low resolution, then refined in passes
+     * up to the super sampled one, which is exact. Each pass is computed in the background and
+     * published on the JavaFX thread with its image, unless newer parameters
+     * have been set in the meantime, in which case the computation is cancelled.
+     * A pass that fails is reported on the standard error and stops the
+     * computation
      */
     private void synchronizeParameters(PanoramaUserParameters p) {
         setParameters(p);
-        panorama.set(new PanoramaComputer(cem)
-                .computePanorama(getParameters().panoramaParameters()));
-        image.set(PanoramaRenderer.renderPanorama(getPanorama(),
-                getImagePainter(getPanorama())));
-        labels.setAll(labelizer.labels(getParameters().panoramaDisplayParameters()));
-        
+        computation.cancel(false);
+
+        List<PanoramaParameters> passes = new ArrayList<>();
+        for (int e = COARSEST_SAMPLING_EXPONENT; e <= p.superSamplingExponent(); ++e)
+            passes.add(p.panoramaParameters(e));
+        // the labels are published with the first pass
+        AtomicBoolean labelled = new AtomicBoolean();
+        long g = ++generation;
+
+        computation = computer.computePanoramaInPasses(passes,
+                computer.withSampledProfiles(PREVIEW_PROFILE_STEP),
+                newPanorama -> {
+                    Image newImage = PanoramaRenderer.renderPanoramaInParallel(
+                            newPanorama, getImagePainter(newPanorama), pool);
+                    List<Node> newLabels = labelled.getAndSet(true) ? null
+                            : labelizer.labels(p.panoramaDisplayParameters());
+                    Platform.runLater(() -> {
+                        if (generation == g) {
+                            panorama.set(newPanorama);
+                            image.set(newImage);
+                            if (newLabels != null)
+                                labels.setAll(newLabels);
+                        }
+                    });
+                }, pool);
+        // the failures of the passes are reported, the last image remaining
+        computation.whenComplete((newPanorama, t) -> {
+            if (t != null && !(t instanceof CancellationException))
+                t.printStackTrace();
+        });
     }
 }
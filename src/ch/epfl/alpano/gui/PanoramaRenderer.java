@@ -1,6 +1,8 @@
 
 package ch.epfl.alpano.gui;
 
+import java.util.concurrent.ForkJoinPool;
+
 import ch.epfl.alpano.Panorama;
 import javafx.scene.image.*;
 
@@ -15,18 +17,48 @@ public interface PanoramaRenderer {
      * @param panorama
      * @param painter
      * @return a rendered Image from the values of the panorama and the colors
-     *         of the painter
+     *         of the painter, which fills all its pixels at once before they
+     *         are written to the image in one go
      */
     static Image renderPanorama(Panorama panorama, ImagePainter painter) {
-        int width = panorama.parameters().width();
-        int height = panorama.parameters().height();
+        return toImage(ArgbImage.render(panorama, painter));
+    }
+
+    /**
+     * @param panorama
+     * @param painter
+     * @return the image renderPanorama returns, whose bands of rows are
+     *         painted in parallel in the common fork-join pool
+     */
+    static Image renderPanoramaInParallel(Panorama panorama,
+            ImagePainter painter) {
+        return toImage(ArgbImage.renderInParallel(panorama, painter));
+    }
+
+    /**
+     * @param panorama
+     * @param painter
+     * @param pool
+     * @return the image renderPanorama returns, whose bands of rows are
+     *         painted in parallel in the given pool
+     * @throws NullPointerException
+     */
+    static Image renderPanoramaInParallel(Panorama panorama,
+            ImagePainter painter, ForkJoinPool pool) {
+        return toImage(ArgbImage.renderInParallel(panorama, painter, pool));
+    }
+
+    /**
+     * @param argbImage
+     * @return the JavaFX image of the given pixels, written in one go
+     */
+    static Image toImage(ArgbImage argbImage) {
+        int width = argbImage.width();
+        int height = argbImage.height();
         WritableImage image = new WritableImage(width, height);
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                image.getPixelWriter().setColor(x, y, painter.colorAt(x, y));
-            }
-        }
+        image.getPixelWriter().setPixels(0, 0, width, height,
+                PixelFormat.getIntArgbPreInstance(), argbImage.pixelArray(), 0,
+                width);
         return image;
     }
-
 }
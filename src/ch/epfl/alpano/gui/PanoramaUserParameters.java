@@ -165,12 +165,7 @@ public final class PanoramaUserParameters {
 	 *         exponent
 	 */
 	public PanoramaParameters panoramaParameters() {
-		return new PanoramaParameters(
-				new GeoPoint(toRadians(observerLongitude() / SCALE), toRadians(observerLatitude() / SCALE)),
-				observerElevation(), Azimuth.canonicalize(toRadians(centerAzimuth())),
-				toRadians(horizontalFieldOfView()), TO_METERS * maxDistance(),
-				width() * (int) Math.pow(2, superSamplingExponent()),
-				height() * (int) Math.pow(2, superSamplingExponent()));
+		return panoramaParameters(superSamplingExponent());
 	}
 
 	/**
@@ -179,10 +174,23 @@ public final class PanoramaUserParameters {
 	 *         sampling exponent
 	 */
 	public PanoramaParameters panoramaDisplayParameters() {
+		return panoramaParameters(0);
+	}
+
+	/**
+	 * @param samplingExponent
+	 * @return a PanoramaParameters using the user parameters after converting
+	 *         them to the appropriate values, whose width and height are
+	 *         multiplied by 2 to the power of the given exponent, which can be
+	 *         negative
+	 */
+	public PanoramaParameters panoramaParameters(int samplingExponent) {
 		return new PanoramaParameters(
 				new GeoPoint(toRadians(observerLongitude() / SCALE), toRadians(observerLatitude() / SCALE)),
 				observerElevation(), Azimuth.canonicalize(toRadians(centerAzimuth())),
-				toRadians(horizontalFieldOfView()), TO_METERS * maxDistance(), width(), height());
+				toRadians(horizontalFieldOfView()), TO_METERS * maxDistance(),
+				max(2, (int) scalb((double) width(), samplingExponent)),
+				max(1, (int) scalb((double) height(), samplingExponent)));
 	}
 
 	@Override
@@ -1,5 +1,9 @@
 package ch.epfl.alpano.gui;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * predefined panoramas
  * 
@@ -30,4 +34,10 @@ public interface PredefinedPanoramas {
 
 	public static PanoramaUserParameters PLAGE_DU_PELICAN = new PanoramaUserParameters(65728, 465132, 380, 135, 60,
 			MAX_DISTANCE, WIDTH, HEIGHT, SAMPLING);
+
+	/**
+	 * all the predefined panoramas
+	 */
+	public static List<PanoramaUserParameters> ALL = Collections.unmodifiableList(Arrays.asList(NIESEN,
+			ALPES_DU_JURA, MONT_RACINE, FINSTERAARHORN, TOUR_DE_SAUVABELIN, PLAGE_DU_PELICAN));
 }
@@ -6,6 +6,8 @@ import static ch.epfl.alpano.Math2.firstIntervalContainingRoot;
 import static ch.epfl.alpano.Math2.floorMod;
 import static ch.epfl.alpano.Math2.haversin;
 import static ch.epfl.alpano.Math2.improveRoot;
+import static ch.epfl.alpano.Math2.improveRootBrent;
+import static ch.epfl.alpano.Math2.improveRootIllinois;
 import static ch.epfl.alpano.Math2.lerp;
 import static ch.epfl.alpano.Math2.sq;
 import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
@@ -155,6 +157,20 @@ public class Math2Test {
         }
     }
 
+    @Test
+    public void bilerpOfArraysEqualsBilerpOfEachElement() {
+        Random rng = newRandom();
+        double[][] a = new double[6][RANDOM_ITERATIONS];
+        for (double[] values : a)
+            for (int i = 0; i < RANDOM_ITERATIONS; ++i)
+                values[i] = rng.nextDouble();
+        double[] result = new double[RANDOM_ITERATIONS + 3];
+        bilerp(a[0], a[1], a[2], a[3], a[4], a[5], result, 3, RANDOM_ITERATIONS);
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i)
+            assertEquals(bilerp(a[0][i], a[1][i], a[2][i], a[3][i], a[4][i], a[5][i]),
+                    result[i + 3], 0);
+    }
+
     @Test
     public void bilerpIsCorrectInCorners() {
         Random rng = newRandom();
@@ -190,6 +206,15 @@ public class Math2Test {
         assertEquals(3, i2, 0);
     }
 
+    @Test
+    public void firstIntervalContainingRootStoresValuesAtBounds() {
+        double[] fAtBounds = new double[2];
+        double i = firstIntervalContainingRoot(new Sin(), 1, 4, 1, fAtBounds);
+        assertEquals(3, i, 0);
+        assertEquals(sin(3), fAtBounds[0], 0);
+        assertEquals(sin(4), fAtBounds[1], 0);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void improveRootFailsWhenIntervalDoesNotContainRoot() {
         improveRoot(new Sin(), 1, 2, 1e-10);
@@ -204,6 +229,43 @@ public class Math2Test {
         assertEquals(-PI, mPi, 1e-10);
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void improveRootIllinoisFailsWhenIntervalDoesNotContainRoot() {
+        improveRootIllinois(new Sin(), 1, 2, 1e-10);
+    }
+
+    @Test
+    public void improveRootIllinoisWorksOnSin() {
+        assertEquals(PI, improveRootIllinois(new Sin(), 3.1, 3.2, 1e-10), 1e-10);
+        assertEquals(-PI, improveRootIllinois(new Sin(), -4, -3.1, 1e-10), 1e-10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void improveRootBrentFailsWhenIntervalDoesNotContainRoot() {
+        improveRootBrent(new Sin(), 1, 2, 1e-10);
+    }
+
+    @Test
+    public void improveRootBrentWorksOnSin() {
+        assertEquals(PI, improveRootBrent(new Sin(), 3.1, 3.2, 1e-10), 1e-10);
+        assertEquals(-PI, improveRootBrent(new Sin(), -4, -3.1, 1e-10), 1e-10);
+    }
+
+    @Test
+    public void rootRefinersReturnLowerBoundOfIntervalContainingRoot() {
+        Random rng = newRandom();
+        RootRefiner[] refiners = { RootRefiner.bisection(),
+                RootRefiner.illinois(), RootRefiner.brent() };
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+            double r = rng.nextDouble() * 64, a = rng.nextDouble() * 6 - 3;
+            DoubleUnaryOperator f = x -> (x - r) * (1 + a * sq(x / 64 - 0.5));
+            for (RootRefiner refiner : refiners) {
+                double x = refiner.improveRoot(f, 0, 64, 4);
+                assertTrue(x <= r + 1e-9 && r <= x + 4);
+            }
+        }
+    }
+
     private static double nextAngle(Random rng) {
         return rng.nextDouble() * 2d * PI;
     }
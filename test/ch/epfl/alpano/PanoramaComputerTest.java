@@ -6,8 +6,18 @@ import static java.lang.Math.cos;
 import static java.lang.Math.sin;
 import static java.lang.Math.toRadians;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.DoubleUnaryOperator;
 
 import org.junit.Test;
@@ -15,6 +25,7 @@ import org.junit.Test;
 import ch.epfl.alpano.dem.ContinuousElevationModel;
 import ch.epfl.alpano.dem.DiscreteElevationModel;
 import ch.epfl.alpano.dem.ElevationProfile;
+import ch.epfl.alpano.dem.ElevationPyramid;
 
 public class PanoramaComputerTest {
     @Test(expected = NullPointerException.class)
@@ -60,6 +71,239 @@ public class PanoramaComputerTest {
         }
     }
 
+    @Test
+    public void computePanoramaInParallelMatchesSequentialComputation() {
+        int w = 50, h = 20;
+        GeoPoint o = new GeoPoint(0,0);
+        PanoramaParameters pp = new PanoramaParameters(o, 2000, toRadians(45), toRadians(h), 300_000, w, h);
+        PanoramaComputer pc = new PanoramaComputer(wavyContDEM());
+        Panorama p1 = pc.computePanorama(pp);
+        Panorama p2 = pc.computePanoramaInParallel(pp);
+        for (int x = 0; x < w; ++x) {
+            for (int y = 0; y < h; ++y) {
+                assertEquals(p1.distanceAt(x, y), p2.distanceAt(x, y), 0);
+                assertEquals(p1.longitudeAt(x, y), p2.longitudeAt(x, y), 0);
+                assertEquals(p1.latitudeAt(x, y), p2.latitudeAt(x, y), 0);
+                assertEquals(p1.elevationAt(x, y), p2.elevationAt(x, y), 0);
+                assertEquals(p1.slopeAt(x, y), p2.slopeAt(x, y), 0);
+            }
+        }
+    }
+
+    @Test
+    public void computePanoramaWithSampledProfilesWorksOnFlatTerrain() {
+        int w = 50, h = 20;
+        GeoPoint o = new GeoPoint(0,0);
+        PanoramaParameters pp = new PanoramaParameters(o, 100, toRadians(45), toRadians(h), 300_000, w, h);
+        PanoramaComputer pc = new PanoramaComputer(zeroContDEM());
+        Panorama p1 = pc.computePanorama(pp);
+        Panorama p2 = pc.withSampledProfiles(64).computePanorama(pp);
+        for (int x = 0; x < w; ++x) {
+            for (int y = 0; y < h; ++y)
+                assertEquals(p1.distanceAt(x, y), p2.distanceAt(x, y), 0);
+        }
+    }
+
+    @Test
+    public void computePanoramaWithSampledProfilesSeesTheGroundBetweenSamples() {
+        // 1000 m above flat terrain, the steepest ray to the ground reaches it
+        // about 121 km away, between the samples at 100 km and 150 km
+        int w = 3, h = 401;
+        GeoPoint o = new GeoPoint(0,0);
+        PanoramaParameters pp = new PanoramaParameters(o, 1000, toRadians(45), toRadians(0.01), 300_000, w, h);
+        PanoramaComputer pc = new PanoramaComputer(zeroContDEM());
+        Panorama p1 = pc.computePanorama(pp);
+        Panorama p2 = pc.withSampledProfiles(50_000).computePanorama(pp);
+        for (int x = 0; x < w; ++x) {
+            for (int y = 0; y < h; ++y)
+                assertEquals(p1.distanceAt(x, y), p2.distanceAt(x, y), 0);
+        }
+    }
+
+    @Test
+    public void computePanoramaWithSampledProfilesIsCloseOnHillyTerrain() {
+        int w = 50, h = 20;
+        GeoPoint o = new GeoPoint(0,0);
+        PanoramaParameters pp = new PanoramaParameters(o, 2000, toRadians(45), toRadians(h), 300_000, w, h);
+        PanoramaComputer pc = new PanoramaComputer(wavyContDEM());
+        Panorama p1 = pc.computePanorama(pp);
+        Panorama p2 = pc.withSampledProfiles(64).computePanorama(pp);
+        for (int x = 0; x < w; ++x) {
+            for (int y = 0; y < h; ++y) {
+                float d = p1.distanceAt(x, y);
+                if (d == POSITIVE_INFINITY)
+                    assertEquals(d, p2.distanceAt(x, y), 0);
+                else
+                    assertEquals(d, p2.distanceAt(x, y), d * 0.02);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withSampledProfilesFailsWithZeroStep() {
+        new PanoramaComputer(zeroContDEM()).withSampledProfiles(0);
+    }
+
+    @Test
+    public void computePanoramaWithElevationPyramidMatchesComputationWithout() {
+        int w = 50, h = 20;
+        GeoPoint o = new GeoPoint(0,0);
+        PanoramaParameters pp = new PanoramaParameters(o, 2000, toRadians(45), toRadians(h), 300_000, w, h);
+        PanoramaComputer pc = new PanoramaComputer(wavyContDEM());
+        ElevationPyramid pyramid = ElevationPyramid.of(new WavyDEM(new Interval2D(
+                new Interval1D(0, 1200),
+                new Interval1D(0, 1200))));
+        Panorama p1 = pc.computePanorama(pp);
+        Panorama p2 = pc.withElevationPyramid(pyramid).computePanorama(pp);
+        for (int x = 0; x < w; ++x) {
+            for (int y = 0; y < h; ++y)
+                assertEquals(p1.distanceAt(x, y), p2.distanceAt(x, y), 0);
+        }
+    }
+
+    @Test
+    public void computePanoramaWithOtherRefinersIsAsPreciseAsBisection() {
+        int w = 50, h = 20;
+        GeoPoint o = new GeoPoint(0,0);
+        PanoramaParameters pp = new PanoramaParameters(o, 100, toRadians(45), toRadians(h), 300_000, w, h);
+        PanoramaComputer pc = new PanoramaComputer(zeroContDEM());
+        Panorama p1 = pc.computePanorama(pp);
+        for (RootRefiner refiner : new RootRefiner[] { RootRefiner.illinois(), RootRefiner.brent() }) {
+            Panorama p2 = pc.withRootRefiner(refiner).computePanorama(pp);
+            for (int x = 0; x < w; ++x) {
+                for (int y = 0; y < h; ++y) {
+                    double maxError = 4 / Math.cos(pp.altitudeForY(y));
+                    assertEquals(p1.distanceAt(x, y), p2.distanceAt(x, y), maxError + 1e-2);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void computePanoramaAsyncMatchesSequentialComputation() throws Exception {
+        int w = 50, h = 20;
+        GeoPoint o = new GeoPoint(0,0);
+        PanoramaParameters pp = new PanoramaParameters(o, 2000, toRadians(45), toRadians(h), 300_000, w, h);
+        PanoramaComputer pc = new PanoramaComputer(wavyContDEM());
+        AtomicInteger maxProgress = new AtomicInteger();
+        Panorama p1 = pc.computePanorama(pp);
+        Panorama p2 = pc.computePanoramaAsync(pp, c -> maxProgress.accumulateAndGet(c, Math::max)).get();
+        assertEquals(w, maxProgress.get());
+        for (int x = 0; x < w; ++x) {
+            for (int y = 0; y < h; ++y)
+                assertEquals(p1.distanceAt(x, y), p2.distanceAt(x, y), 0);
+        }
+    }
+
+    @Test
+    public void computePanoramaAsyncStopsWhenCancelled() throws Exception {
+        int w = 2000, h = 20;
+        GeoPoint o = new GeoPoint(0,0);
+        PanoramaParameters pp = new PanoramaParameters(o, 2000, toRadians(45), toRadians(h), 300_000, w, h);
+        PanoramaComputer pc = new PanoramaComputer(wavyContDEM());
+        AtomicInteger computedColumns = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        ForkJoinPool pool = new ForkJoinPool(1);
+        CompletableFuture<Panorama> p = pc.computePanoramaAsync(pp, c -> {
+            computedColumns.incrementAndGet();
+            started.countDown();
+        }, pool);
+        started.await();
+        p.cancel(false);
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+        assertTrue(p.isCancelled());
+        assertTrue(computedColumns.get() < w);
+    }
+
+    @Test
+    public void computePanoramaAsyncWithCoarserPanoramaMatchesExactComputationOnHillyTerrain() throws Exception {
+        GeoPoint o = new GeoPoint(0,0);
+        PanoramaParameters fine = new PanoramaParameters(o, 1000, toRadians(45), toRadians(20), 300_000, 97, 49);
+        PanoramaParameters coarse = new PanoramaParameters(o, 1000, toRadians(45), toRadians(20), 300_000, 13, 7);
+        PanoramaComputer pc = new PanoramaComputer(wavyContDEM());
+        Panorama p1 = pc.computePanorama(fine);
+        Panorama p2 = pc.computePanoramaAsync(fine, pc.computePanorama(coarse), c -> {}, ForkJoinPool.commonPool()).get();
+        assertSameDistances(p1, p2);
+    }
+
+    @Test
+    public void computePanoramaInPassesPublishesEveryPassInOrder() throws Exception {
+        GeoPoint o = new GeoPoint(0,0);
+        List<PanoramaParameters> passes = new ArrayList<>();
+        for (int s = 3; s >= 0; --s)
+            passes.add(new PanoramaParameters(o, 1000, toRadians(45), toRadians(20), 300_000, (96 >> s) + 1, (48 >> s) + 1));
+        PanoramaComputer pc = new PanoramaComputer(wavyContDEM());
+        List<Integer> widths = Collections.synchronizedList(new ArrayList<>());
+        Panorama p = pc.computePanoramaInPasses(passes, pc.withSampledProfiles(64),
+                q -> widths.add(q.parameters().width()), ForkJoinPool.commonPool()).get();
+        assertEquals(Arrays.asList(13, 25, 49, 97), widths);
+        assertSameDistances(pc.computePanorama(passes.get(3)), p);
+    }
+
+    @Test
+    public void computePanoramaInPassesFindsNarrowObstaclesInTheLastPass() throws Exception {
+        // a tower of about 100 m by 100 m, 5 km away, between two columns of
+        // the first pass
+        GeoPoint o = new GeoPoint(0,0);
+        double azimuth = toRadians(45 + 0.83), d = 5000 / Distance.EARTH_RADIUS;
+        int towerX = (int) Math.round(Math.toDegrees(d * sin(azimuth)) * 3600);
+        int towerY = (int) Math.round(Math.toDegrees(d * cos(azimuth)) * 3600);
+        PanoramaComputer pc = new PanoramaComputer(new ContinuousElevationModel(
+                new TowerDEM(positiveQuadrant(), towerX, towerY)));
+        List<PanoramaParameters> passes = Arrays.asList(
+                new PanoramaParameters(o, 1000, toRadians(45), toRadians(20), 300_000, 13, 7),
+                new PanoramaParameters(o, 1000, toRadians(45), toRadians(20), 300_000, 97, 49));
+        Panorama p = pc.computePanoramaInPasses(passes, pc, q -> {}, ForkJoinPool.commonPool()).get();
+        assertSameDistances(pc.computePanorama(passes.get(1)), p);
+
+        int towerSamples = 0;
+        for (int x = 0; x < 97; ++x) {
+            for (int y = 0; y < 49; ++y) {
+                if (p.distanceAt(x, y) < 5200)
+                    ++towerSamples;
+            }
+        }
+        assertTrue(towerSamples > 0);
+    }
+
+    @Test
+    public void computePanoramaInPassesStopsWhenCancelled() throws Exception {
+        GeoPoint o = new GeoPoint(0,0);
+        List<PanoramaParameters> passes = Arrays.asList(
+                new PanoramaParameters(o, 1000, toRadians(45), toRadians(20), 300_000, 13, 7),
+                new PanoramaParameters(o, 1000, toRadians(45), toRadians(20), 300_000, 97, 49));
+        PanoramaComputer pc = new PanoramaComputer(wavyContDEM());
+        AtomicInteger publishedPasses = new AtomicInteger();
+        CountDownLatch published = new CountDownLatch(1), cancelled = new CountDownLatch(1);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            CompletableFuture<Panorama> p = pc.computePanoramaInPasses(passes, pc, q -> {
+                publishedPasses.incrementAndGet();
+                published.countDown();
+                try {
+                    cancelled.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, pool);
+            published.await();
+            p.cancel(false);
+            cancelled.countDown();
+            assertTrue(p.isCancelled());
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        assertEquals(1, publishedPasses.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void computePanoramaInPassesFailsWithoutPass() {
+        PanoramaComputer pc = new PanoramaComputer(zeroContDEM());
+        pc.computePanoramaInPasses(Collections.emptyList(), pc, q -> {}, ForkJoinPool.commonPool());
+    }
+
     @Test
     public void rayToGroundDistanceAccountsForEarthCurvatureAndRefraction() {
         double dropPerM2 = (1d - 0.13d) / (2d * 6_371_000d);
@@ -74,6 +318,14 @@ public class PanoramaComputerTest {
         }
     }
 
+    private static void assertSameDistances(Panorama expected, Panorama actual) {
+        PanoramaParameters pp = expected.parameters();
+        for (int x = 0; x < pp.width(); ++x) {
+            for (int y = 0; y < pp.height(); ++y)
+                assertEquals(expected.distanceAt(x, y), actual.distanceAt(x, y), 0);
+        }
+    }
+
     private static Interval2D positiveQuadrant() {
         return new Interval2D(
                 new Interval1D(0, 3600 * 179),
@@ -129,6 +381,31 @@ public class PanoramaComputerTest {
         }
     }
 
+    private final static class TowerDEM implements DiscreteElevationModel {
+        private final static double HEIGHT = 1000;
+        private final Interval2D extent;
+        private final int towerX, towerY;
+
+        public TowerDEM(Interval2D extent, int towerX, int towerY) {
+            this.extent = extent;
+            this.towerX = towerX;
+            this.towerY = towerY;
+        }
+
+        @Override
+        public void close() throws Exception { }
+
+        @Override
+        public Interval2D extent() { return extent; }
+
+        @Override
+        public double elevationSample(int x, int y) {
+            if (! extent.contains(x, y))
+                throw new IllegalArgumentException();
+            return Math.abs(x - towerX) <= 1 && Math.abs(y - towerY) <= 1 ? HEIGHT : 0;
+        }
+    }
+
     private static float[] WAVY_EXPECTED_DATA = new float[] {
             POSITIVE_INFINITY, 0, 0, 0, 0,
             POSITIVE_INFINITY, 0, 0, 0, 0,
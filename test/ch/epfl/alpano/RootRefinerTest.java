@@ -0,0 +1,50 @@
+package ch.epfl.alpano;
+
+import static ch.epfl.alpano.Math2.firstIntervalContainingRoot;
+import static ch.epfl.alpano.Math2.improveRoot;
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static java.lang.Math.sin;
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.DoubleUnaryOperator;
+
+import org.junit.Test;
+
+public class RootRefinerTest {
+    @Test
+    public void firstRootMatchesBisectionOfFirstInterval() {
+        Random rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+            double a = rng.nextDouble() * 0.1, b = rng.nextDouble() * 100;
+            DoubleUnaryOperator f = x -> sin(a * x + b) + 0.5;
+            double minX = rng.nextDouble() * 100, maxX = minX + rng.nextDouble() * 1000;
+            double bound = firstIntervalContainingRoot(f, minX, maxX, 8);
+            double expected = bound == Double.POSITIVE_INFINITY ? bound
+                    : improveRoot(f, bound, bound + 8, 1e-3);
+            assertEquals(expected,
+                    RootRefiner.bisection().firstRoot(f, minX, maxX, 8, 1e-3), 0);
+        }
+    }
+
+    @Test
+    public void firstRootEvaluatesEachPointOfGridOnce() {
+        Set<Double> evaluated = new HashSet<>();
+        DoubleUnaryOperator f = x -> {
+            if (! evaluated.add(x))
+                throw new AssertionError("evaluated twice at " + x);
+            return 1000 - x;
+        };
+        double root = RootRefiner.bisection().firstRoot(f, 0, 2000, 64, 4);
+        assertEquals(1000, root, 4);
+    }
+
+    @Test
+    public void firstRootReturnsInfinityWithoutRoot() {
+        assertEquals(Double.POSITIVE_INFINITY,
+                RootRefiner.brent().firstRoot(x -> 1, 0, 1000, 64, 4), 0);
+    }
+}
@@ -0,0 +1,122 @@
+package ch.epfl.alpano.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import ch.epfl.alpano.Interval1D;
+import ch.epfl.alpano.Interval2D;
+import ch.epfl.alpano.PanoramaComputer;
+import ch.epfl.alpano.dem.ContinuousElevationModel;
+import ch.epfl.alpano.dem.DiscreteElevationModel;
+import ch.epfl.alpano.batch.BatchRenderer.Job;
+import ch.epfl.alpano.gui.PanoramaUserParameters;
+import ch.epfl.alpano.gui.PredefinedPanoramas;
+
+public class BatchRendererTest {
+    private static final String CSV = "# name,longitude,latitude,...\n"
+            + "\n"
+            + "first, 76500, 467300, 600, 180, 60, 20, 40, 12, 0\n"
+            + "second,68087,470085,1380,162,27,20,30,10,0\n";
+
+    @Test
+    public void readJobsReadsEveryLineOfParameters() throws IOException {
+        List<Job> jobs = BatchRenderer.readJobs(new StringReader(CSV));
+        assertEquals(2, jobs.size());
+        assertEquals("first", jobs.get(0).name());
+        assertEquals(new PanoramaUserParameters(76500, 467300, 600, 180, 60,
+                20, 40, 12, 0), jobs.get(0).parameters());
+        assertEquals("second", jobs.get(1).name());
+        assertEquals(1380, jobs.get(1).parameters().observerElevation());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void readJobsFailsWithMissingParameter() throws IOException {
+        BatchRenderer.readJobs(new StringReader("a,76500,467300,600,180,60,20,40,12\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void readJobsFailsWithNameInDirectory() throws IOException {
+        BatchRenderer.readJobs(new StringReader("../a,76500,467300,600,180,60,20,40,12,0\n"));
+    }
+
+    @Test
+    public void readJobsFailsWithValueOutOfRange() throws IOException {
+        try {
+            BatchRenderer.readJobs(new StringReader(
+                    "a,76500,467300,600,180,60,20,40,12,0\nb,76500,467300,600,180,60,20,20,12,0\n"));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("line 2: WIDTH 20"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void readJobsFailsWithHeightTooLargeForFieldOfView() throws IOException {
+        BatchRenderer.readJobs(new StringReader("a,76500,467300,600,180,60,20,40,200,0\n"));
+    }
+
+    @Test
+    public void predefinedJobsHaveDistinctNames() {
+        List<Job> jobs = BatchRenderer.predefinedJobs();
+        assertEquals(PredefinedPanoramas.ALL.size(), jobs.size());
+        assertEquals(jobs.size(), jobs.stream().map(Job::name).distinct().count());
+    }
+
+    @Test
+    public void renderWritesImagesAndTimings() throws Exception {
+        File directory = Files.createTempDirectory("batch").toFile();
+        directory.deleteOnExit();
+        DiscreteElevationModel dem = new DiscreteElevationModel() {
+            private final Interval2D extent = new Interval2D(
+                    new Interval1D(5 * 3600, 9 * 3600),
+                    new Interval1D(45 * 3600, 48 * 3600));
+
+            @Override
+            public Interval2D extent() {
+                return extent;
+            }
+
+            @Override
+            public double elevationSample(int x, int y) {
+                return (x * 7 + y * 13) % 1000;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        PanoramaComputer computer = new PanoramaComputer(new ContinuousElevationModel(dem));
+        List<Job> jobs = BatchRenderer.readJobs(new StringReader(CSV));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(0, BatchRenderer.render(computer, jobs, directory, 2,
+                new PrintStream(out, true, "UTF-8")));
+        assertTrue(out.toString("UTF-8").contains("2 panoramas in "));
+        for (Job job : jobs) {
+            File image = new File(directory, job.name() + ".png");
+            assertEquals(job.parameters().panoramaParameters().width(),
+                    ImageIO.read(image).getWidth());
+            image.deleteOnExit();
+        }
+        File timings = new File(directory, "timings.csv");
+        timings.deleteOnExit();
+        List<String> lines = Files.readAllLines(timings.toPath());
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(1).startsWith("first,40,12,"));
+        assertTrue(lines.get(2).startsWith("second,30,10,"));
+    }
+}
@@ -0,0 +1,73 @@
+package ch.epfl.alpano.dem;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+import ch.epfl.alpano.Interval1D;
+import ch.epfl.alpano.Interval2D;
+
+public class BlockedDiscreteElevationModelTest {
+    private final static Interval2D EXTENT = new Interval2D(
+            new Interval1D(-100, 70),
+            new Interval1D(3600, 3800));
+
+    @Test
+    public void samplesMatchThoseOfConvertedModel() throws Exception {
+        File f = tempFile();
+        DiscreteElevationModel dem = new PatternDEM(EXTENT);
+        BlockedDiscreteElevationModel.write(dem, f);
+        try (BlockedDiscreteElevationModel blocked = new BlockedDiscreteElevationModel(f)) {
+            assertEquals(EXTENT, blocked.extent());
+            for (int x = -100; x <= 70; ++x) {
+                for (int y = 3600; y <= 3800; ++y)
+                    assertEquals(dem.elevationSample(x, y), blocked.elevationSample(x, y), 0);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void elevationSampleFailsOutsideOfExtent() throws Exception {
+        File f = tempFile();
+        BlockedDiscreteElevationModel.write(new PatternDEM(EXTENT), f);
+        try (BlockedDiscreteElevationModel blocked = new BlockedDiscreteElevationModel(f)) {
+            blocked.elevationSample(71, 3600);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorFailsOnOtherFiles() throws Exception {
+        File f = tempFile();
+        Files.write(f.toPath(), new byte[5000]);
+        try (BlockedDiscreteElevationModel blocked = new BlockedDiscreteElevationModel(f)) {}
+    }
+
+    private static File tempFile() throws IOException {
+        File f = File.createTempFile("dem", ".blk");
+        f.deleteOnExit();
+        return f;
+    }
+
+    private final static class PatternDEM implements DiscreteElevationModel {
+        private final Interval2D extent;
+
+        public PatternDEM(Interval2D extent) { this.extent = extent; }
+
+        @Override
+        public void close() throws Exception { }
+
+        @Override
+        public Interval2D extent() { return extent; }
+
+        @Override
+        public double elevationSample(int x, int y) {
+            if (! extent.contains(x, y))
+                throw new IllegalArgumentException();
+            return (x * 7 + y * 13) % 4000;
+        }
+    }
+}
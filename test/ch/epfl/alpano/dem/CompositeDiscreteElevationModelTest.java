@@ -1,6 +1,5 @@
 package ch.epfl.alpano.dem;
 
-import static ch.epfl.alpano.Preconditions.checkArgument;
 import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
 import static ch.epfl.test.TestRandomizer.newRandom;
 import static java.lang.Math.toRadians;
@@ -96,26 +95,3 @@ public class CompositeDiscreteElevationModelTest {
         assertTrue(dem2.isClosed);
     }
 }
-
-class ConstantElevationDEM implements DiscreteElevationModel {
-    private final Interval2D extent;
-    private final double elevation;
-    boolean isClosed = false;
-
-    public ConstantElevationDEM(Interval2D extent, double elevation) {
-        this.extent = extent;
-        this.elevation = elevation;
-    }
-
-    @Override
-    public void close() throws Exception { isClosed = true; }
-
-    @Override
-    public Interval2D extent() { return extent; }
-
-    @Override
-    public double elevationSample(int x, int y) {
-        checkArgument(extent.contains(x, y));
-        return elevation;
-    }
-}
\ No newline at end of file
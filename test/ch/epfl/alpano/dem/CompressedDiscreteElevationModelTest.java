@@ -0,0 +1,93 @@
+package ch.epfl.alpano.dem;
+
+import static java.lang.Math.PI;
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.epfl.alpano.Interval1D;
+import ch.epfl.alpano.Interval2D;
+
+public class CompressedDiscreteElevationModelTest {
+    private final static Interval2D EXTENT = new Interval2D(
+            new Interval1D(-100, 200),
+            new Interval1D(3600, 3800));
+
+    @Test
+    public void samplesMatchThoseOfConvertedModel() throws Exception {
+        File f = tempFile();
+        DiscreteElevationModel dem = new HillyDEM(EXTENT);
+        CompressedDiscreteElevationModel.write(dem, f);
+        for (int cachedBlocks : new int[] { 1, 3, 256 }) {
+            try (DiscreteElevationModel c = new CompressedDiscreteElevationModel(f, cachedBlocks)) {
+                assertEquals(EXTENT, c.extent());
+                for (int x = -100; x <= 200; ++x) {
+                    for (int y = 3600; y <= 3800; ++y)
+                        assertEquals(dem.elevationSample(x, y), c.elevationSample(x, y), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void samplesMatchInRandomOrder() throws Exception {
+        File f = tempFile();
+        DiscreteElevationModel dem = new HillyDEM(EXTENT);
+        CompressedDiscreteElevationModel.write(dem, f);
+        Random rng = new Random(2017);
+        try (DiscreteElevationModel c = new CompressedDiscreteElevationModel(f, 2)) {
+            for (int i = 0; i < 10_000; ++i) {
+                int x = -100 + rng.nextInt(301), y = 3600 + rng.nextInt(201);
+                assertEquals(dem.elevationSample(x, y), c.elevationSample(x, y), 0);
+            }
+        }
+    }
+
+    @Test
+    public void fileIsSmallerThanRawSamples() throws Exception {
+        File f = tempFile();
+        CompressedDiscreteElevationModel.write(new HillyDEM(EXTENT), f);
+        assertTrue(f.length() < 301 * 201 * 2 / 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorFailsOnOtherFiles() throws Exception {
+        File f = tempFile();
+        Files.write(f.toPath(), new byte[5000]);
+        try (DiscreteElevationModel c = new CompressedDiscreteElevationModel(f)) {}
+    }
+
+    private static File tempFile() throws IOException {
+        File f = File.createTempFile("dem", ".hgz");
+        f.deleteOnExit();
+        return f;
+    }
+
+    private final static class HillyDEM implements DiscreteElevationModel {
+        private final Interval2D extent;
+
+        public HillyDEM(Interval2D extent) { this.extent = extent; }
+
+        @Override
+        public void close() throws Exception { }
+
+        @Override
+        public Interval2D extent() { return extent; }
+
+        @Override
+        public double elevationSample(int x, int y) {
+            if (! extent.contains(x, y))
+                throw new IllegalArgumentException();
+            return Math.round(1500 + 1000 * sin(2 * PI * x / 150) * cos(2 * PI * y / 170)
+                    + (x * 31 + y * 17) % 5 - 32768 * (x == 0 && y == 3700 ? 1 : 0));
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package ch.epfl.alpano.dem;
+
+import static ch.epfl.alpano.Preconditions.checkArgument;
+
+import ch.epfl.alpano.Interval2D;
+
+class ConstantElevationDEM implements DiscreteElevationModel {
+    private final Interval2D extent;
+    private final double elevation;
+    boolean isClosed = false;
+
+    public ConstantElevationDEM(Interval2D extent, double elevation) {
+        this.extent = extent;
+        this.elevation = elevation;
+    }
+
+    @Override
+    public void close() throws Exception { isClosed = true; }
+
+    @Override
+    public Interval2D extent() { return extent; }
+
+    @Override
+    public double elevationSample(int x, int y) {
+        checkArgument(extent.contains(x, y));
+        return elevation;
+    }
+}
@@ -109,6 +109,65 @@ public class ContinuousElevationModelTest {
         }
     }
 
+    @Test
+    public void elevationAndSlopeAtEqualsElevationAtAndSlopeAt() {
+        DiscreteElevationModel dDEM = new RandomElevationDEM(EXT_13_13, 1000);
+        ContinuousElevationModel cDEM = new ContinuousElevationModel(dDEM);
+        Random rng = newRandom();
+        double[] elevationAndSlope = new double[2];
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+            // the points just outside the extent use its extension too
+            double x = rng.nextDouble() * 16 - 1;
+            double y = rng.nextDouble() * 16 - 1;
+            GeoPoint p = pointForSampleIndex(x, y);
+            cDEM.elevationAndSlopeAt(p.longitude(), p.latitude(), elevationAndSlope);
+            assertEquals(cDEM.elevationAt(p), elevationAndSlope[0], 0);
+            assertEquals(cDEM.slopeAt(p), elevationAndSlope[1], 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void elevationAndSlopeAtFailsWithTooSmallArray() {
+        ContinuousElevationModel cDEM =
+                new ContinuousElevationModel(new ConstantSlopeDEM(EXT_13_13));
+        cDEM.elevationAndSlopeAt(0, 0, new double[1]);
+    }
+
+    @Test
+    public void elevationsAndSlopesAtEqualElevationAtAndSlopeAt() {
+        DiscreteElevationModel dDEM = new RandomElevationDEM(EXT_100_100, 1000);
+        ContinuousElevationModel cDEM = new ContinuousElevationModel(dDEM);
+        Random rng = newRandom();
+        // the first batch is inside the extent, the second one crosses its edge
+        for (double size : new double[] { 90, 110 }) {
+            double[] lons = new double[RANDOM_ITERATIONS];
+            double[] lats = new double[RANDOM_ITERATIONS];
+            for (int i = 0; i < lons.length; ++i) {
+                GeoPoint p = pointForSampleIndex(rng.nextDouble() * size,
+                        rng.nextDouble() * size);
+                lons[i] = p.longitude();
+                lats[i] = p.latitude();
+            }
+            double[] elevations = new double[lons.length];
+            double[] slopes = new double[lons.length];
+            cDEM.elevationsAndSlopesAt(lons, lats, elevations, slopes);
+            double[] elevationsOnly = new double[lons.length];
+            cDEM.elevationsAt(lons, lats, elevationsOnly);
+            for (int i = 0; i < lons.length; ++i) {
+                assertEquals(cDEM.elevationAt(lons[i], lats[i]), elevations[i], 0);
+                assertEquals(cDEM.elevationAt(lons[i], lats[i]), elevationsOnly[i], 0);
+                assertEquals(cDEM.slopeAt(lons[i], lats[i]), slopes[i], 0);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void elevationsAtFailsWithArraysOfDifferentLengths() {
+        ContinuousElevationModel cDEM =
+                new ContinuousElevationModel(new ConstantSlopeDEM(EXT_13_13));
+        cDEM.elevationsAt(new double[2], new double[2], new double[1]);
+    }
+
     private static GeoPoint pointForSampleIndex(double x, double y) {
         return new GeoPoint(toRadians(x / 3600d), toRadians(y / 3600d));
     }
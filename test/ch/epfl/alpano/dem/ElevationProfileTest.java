@@ -119,6 +119,34 @@ public class ElevationProfileTest {
         }
     }
 
+    @Test
+    public void elevationAtMatchesElevationOfPosition() {
+        ContinuousElevationModel dem = newConstantSlopeDEM();
+        ElevationProfile p = new ElevationProfile(dem, new GeoPoint(toRadians(3),toRadians(40)), 1, 8192);
+        for (int i = 0; i <= 100; ++i) {
+            double x = 81.92 * i;
+            assertEquals(dem.elevationAt(p.positionAt(x)), p.elevationAt(x), 0);
+            assertEquals(dem.slopeAt(p.positionAt(x)), p.slopeAt(x), 0);
+        }
+    }
+
+    @Test
+    public void sampledElevationAtIsCloseToExactElevation() {
+        ContinuousElevationModel dem = newConstantSlopeDEM();
+        GeoPoint o = new GeoPoint(toRadians(3),toRadians(40));
+        ElevationProfile exact = new ElevationProfile(dem, o, 1, 10_000);
+        ElevationProfile sampled = new ElevationProfile(dem, o, 1, 10_000, 64);
+        for (int i = 0; i <= 1000; ++i) {
+            double x = 10d * i;
+            assertEquals(exact.elevationAt(x), sampled.elevationAt(x), 1e-2);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorFailsWhenElevationStepIsNegative() {
+        new ElevationProfile(newConstantSlopeDEM(), new GeoPoint(0,0), 0, 100, -1);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void slopeAtFailsWhenXIsNegative() {
         ElevationProfile p = new ElevationProfile(newConstantSlopeDEM(), new GeoPoint(0,0), 0, 100);
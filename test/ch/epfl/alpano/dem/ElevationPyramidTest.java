@@ -0,0 +1,104 @@
+package ch.epfl.alpano.dem;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.epfl.alpano.Interval1D;
+import ch.epfl.alpano.Interval2D;
+
+public class ElevationPyramidTest {
+    private final static Interval2D EXTENT = new Interval2D(
+            new Interval1D(-300, 700),
+            new Interval1D(100, 450));
+
+    @Test
+    public void maxElevationBoundsTheSamplesOfRandomRectangles() {
+        DiscreteElevationModel dem = new NoisyDEM(EXTENT);
+        ElevationPyramid pyramid = ElevationPyramid.of(dem);
+        Random rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+            int xMin = -300 + rng.nextInt(1000), yMin = 100 + rng.nextInt(350);
+            int xMax = Math.min(700, xMin + rng.nextInt(1 << rng.nextInt(10)));
+            int yMax = Math.min(450, yMin + rng.nextInt(1 << rng.nextInt(9)));
+            double max = Double.NEGATIVE_INFINITY;
+            for (int x = xMin; x <= xMax; ++x) {
+                for (int y = yMin; y <= yMax; ++y)
+                    max = Math.max(max, dem.elevationSample(x, y));
+            }
+            double bound = pyramid.maxElevation(xMin, yMin, xMax, yMax);
+            assertTrue(bound >= max);
+        }
+    }
+
+    @Test
+    public void maxElevationOfWholeExtentIsMaxOfSamples() {
+        DiscreteElevationModel dem = new NoisyDEM(EXTENT);
+        double max = Double.NEGATIVE_INFINITY;
+        for (int x = -300; x <= 700; ++x) {
+            for (int y = 100; y <= 450; ++y)
+                max = Math.max(max, dem.elevationSample(x, y));
+        }
+        assertEquals(max, ElevationPyramid.of(dem).maxElevation(-300, 100, 700, 450), 1e-3);
+    }
+
+    @Test
+    public void maxElevationIgnoresSamplesOutsideOfExtent() {
+        ElevationPyramid pyramid = ElevationPyramid.of(
+                new ConstantElevationDEM(EXTENT, 1000));
+        assertEquals(1000, pyramid.maxElevation(690, 440, 900, 900), 0);
+        assertEquals(Double.NEGATIVE_INFINITY,
+                pyramid.maxElevation(701, 0, 800, 99), 0);
+    }
+
+    @Test
+    public void unionBoundsBothPyramids() {
+        Interval2D ext2 = new Interval2D(
+                new Interval1D(701, 800),
+                new Interval1D(100, 450));
+        ElevationPyramid pyramid = ElevationPyramid
+                .of(new ConstantElevationDEM(EXTENT, 1000))
+                .union(ElevationPyramid.of(new ConstantElevationDEM(ext2, 2000)));
+        assertEquals(1000, pyramid.maxElevation(0, 200, 700, 300), 0);
+        assertEquals(2000, pyramid.maxElevation(0, 200, 701, 300), 0);
+    }
+
+    @Test
+    public void pyramidSavedToFileIsReadBack() throws Exception {
+        File file = File.createTempFile("pyramid", ".max");
+        file.deleteOnExit();
+        file.delete();
+        DiscreteElevationModel dem = new NoisyDEM(EXTENT);
+        ElevationPyramid p1 = ElevationPyramid.of(dem, file);
+        assertTrue(file.exists());
+        ElevationPyramid p2 = ElevationPyramid.of(
+                new ConstantElevationDEM(EXTENT, 0), file);
+        assertEquals(p1.maxElevation(-300, 100, 0, 300),
+                p2.maxElevation(-300, 100, 0, 300), 0);
+    }
+
+    private final static class NoisyDEM implements DiscreteElevationModel {
+        private final Interval2D extent;
+
+        public NoisyDEM(Interval2D extent) { this.extent = extent; }
+
+        @Override
+        public void close() throws Exception { }
+
+        @Override
+        public Interval2D extent() { return extent; }
+
+        @Override
+        public double elevationSample(int x, int y) {
+            if (! extent.contains(x, y))
+                throw new IllegalArgumentException();
+            return new Random(31L * x + y).nextInt(4000) + 0.25;
+        }
+    }
+}
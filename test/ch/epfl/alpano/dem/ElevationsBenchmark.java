@@ -0,0 +1,132 @@
+package ch.epfl.alpano.dem;
+
+import static java.lang.Math.toRadians;
+
+import java.util.Random;
+
+import ch.epfl.alpano.Interval1D;
+import ch.epfl.alpano.Interval2D;
+import ch.epfl.alpano.Math2;
+
+/**
+ * Benchmark of the batch elevation queries: compares the bilinear
+ * interpolation of arrays of corners to the scalar one, then the batch
+ * queries of a continuous elevation model to one query per point
+ *
+ * @author Haitham Hammami (257479)
+ * @author Makki Fourati (247746)
+ */
+final class ElevationsBenchmark {
+    private static final int POINTS = 4096;
+    private static final int ROUNDS = 2000;
+    private static final int WARMUP_ROUNDS = 500;
+
+    public static void main(String[] args) {
+        Random rng = new Random(2017);
+        double[][] corners = new double[6][POINTS];
+        for (double[] a : corners)
+            for (int i = 0; i < POINTS; ++i)
+                a[i] = rng.nextDouble() * 1000;
+        double[] result = new double[POINTS];
+
+        for (int r = 0; r < WARMUP_ROUNDS; ++r) {
+            scalarBilerp(corners, result);
+            arrayBilerp(corners, result);
+        }
+        long t0 = System.nanoTime();
+        for (int r = 0; r < ROUNDS; ++r)
+            scalarBilerp(corners, result);
+        long t1 = System.nanoTime();
+        for (int r = 0; r < ROUNDS; ++r)
+            arrayBilerp(corners, result);
+        long t2 = System.nanoTime();
+        print("bilerp, scalar", t1 - t0);
+        print("bilerp, arrays", t2 - t1);
+
+        // points along a line crossing a tile of random samples, spaced
+        // like those of an elevation profile
+        ContinuousElevationModel cDEM = new ContinuousElevationModel(new ArrayDEM(rng));
+        double[] lons = new double[POINTS], lats = new double[POINTS];
+        for (int i = 0; i < POINTS; ++i) {
+            lons[i] = toRadians(7.01 + i * 0.9 / POINTS);
+            lats[i] = toRadians(46.01 + i * 0.6 / POINTS);
+        }
+        double[] slopes = new double[POINTS];
+
+        for (int r = 0; r < WARMUP_ROUNDS; ++r) {
+            scalarQueries(cDEM, lons, lats, result, null);
+            cDEM.elevationsAt(lons, lats, result);
+            scalarQueries(cDEM, lons, lats, result, slopes);
+            cDEM.elevationsAndSlopesAt(lons, lats, result, slopes);
+        }
+        t0 = System.nanoTime();
+        for (int r = 0; r < ROUNDS; ++r)
+            scalarQueries(cDEM, lons, lats, result, null);
+        t1 = System.nanoTime();
+        for (int r = 0; r < ROUNDS; ++r)
+            cDEM.elevationsAt(lons, lats, result);
+        t2 = System.nanoTime();
+        for (int r = 0; r < ROUNDS; ++r)
+            scalarQueries(cDEM, lons, lats, result, slopes);
+        long t3 = System.nanoTime();
+        for (int r = 0; r < ROUNDS; ++r)
+            cDEM.elevationsAndSlopesAt(lons, lats, result, slopes);
+        long t4 = System.nanoTime();
+        print("elevations, one query per point", t1 - t0);
+        print("elevations, batch", t2 - t1);
+        print("elevations and slopes, one query per point", t3 - t2);
+        print("elevations and slopes, batch", t4 - t3);
+    }
+
+    private static void scalarBilerp(double[][] c, double[] result) {
+        for (int i = 0; i < POINTS; ++i)
+            result[i] = Math2.bilerp(c[0][i], c[1][i], c[2][i], c[3][i], c[4][i] / 1000, c[5][i] / 1000);
+    }
+
+    private static void arrayBilerp(double[][] c, double[] result) {
+        Math2.bilerp(c[0], c[1], c[2], c[3], c[4], c[5], result, 0, POINTS);
+    }
+
+    private static void scalarQueries(ContinuousElevationModel cDEM,
+            double[] lons, double[] lats, double[] elevations, double[] slopes) {
+        for (int i = 0; i < POINTS; ++i) {
+            elevations[i] = cDEM.elevationAt(lons[i], lats[i]);
+            if (slopes != null)
+                slopes[i] = cDEM.slopeAt(lons[i], lats[i]);
+        }
+    }
+
+    private static void print(String name, long nanos) {
+        System.out.printf("%-45s %8.2f ns/point%n", name, (double) nanos / ROUNDS / POINTS);
+    }
+
+    /**
+     * DEM of the tile N46E007 whose samples are random and kept in memory
+     */
+    private static final class ArrayDEM implements DiscreteElevationModel {
+        private static final int SIZE = SAMPLES_PER_DEGREE + 1;
+        private final Interval2D extent = new Interval2D(
+                new Interval1D(7 * SAMPLES_PER_DEGREE, 8 * SAMPLES_PER_DEGREE),
+                new Interval1D(46 * SAMPLES_PER_DEGREE, 47 * SAMPLES_PER_DEGREE));
+        private final short[] samples = new short[SIZE * SIZE];
+
+        ArrayDEM(Random rng) {
+            for (int i = 0; i < samples.length; ++i)
+                samples[i] = (short) rng.nextInt(4000);
+        }
+
+        @Override
+        public Interval2D extent() {
+            return extent;
+        }
+
+        @Override
+        public double elevationSample(int x, int y) {
+            return samples[(x - 7 * SAMPLES_PER_DEGREE) + (y - 46 * SAMPLES_PER_DEGREE) * SIZE];
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
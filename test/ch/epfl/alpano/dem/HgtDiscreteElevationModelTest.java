@@ -5,10 +5,13 @@ import static java.nio.file.StandardOpenOption.CREATE_NEW;
 import static java.nio.file.StandardOpenOption.READ;
 import static java.nio.file.StandardOpenOption.WRITE;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
 import java.nio.ShortBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
@@ -97,6 +100,16 @@ public class HgtDiscreteElevationModelTest {
         createHgtDemWithFileNamed("S03W078.hgt");
     }
 
+    @Test
+    public void extentIsNegativeInSouthAndWest() throws Exception {
+        Path p = copyEmptyHgtFileAs("S03W078.hgt");
+        try (HgtDiscreteElevationModel dem = new HgtDiscreteElevationModel(p.toFile())) {
+            assertEquals(new Interval2D(
+                    new Interval1D(-78 * 3600, -77 * 3600),
+                    new Interval1D(-3 * 3600, -2 * 3600)), dem.extent());
+        }
+    }
+
     @Test
     public void extentMatchesFileName() throws Exception {
         int[] lons = new int[] { 1, 7 };
@@ -143,6 +156,62 @@ public class HgtDiscreteElevationModelTest {
         }
     }
 
+    @Test
+    public void closeReleasesMappingAtOnce() throws Exception {
+        BufferPoolMXBean mapped = ManagementFactory
+                .getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(b -> b.getName().equals("mapped"))
+                .findFirst().get();
+        long count = mapped.getCount(), memory = mapped.getMemoryUsed();
+        Path p = copyEmptyHgtFileAs("N10E010.hgt");
+        for (int i = 0; i < 2000; ++i) {
+            HgtDiscreteElevationModel dem = new HgtDiscreteElevationModel(p.toFile());
+            assertEquals(0, dem.elevationSample(36_001, 36_001), 0);
+            long open = mapped.getCount();
+            dem.close();
+            // the GC may release the mappings of other tests meanwhile, so
+            // the counts can only be expected to drop
+            assertTrue(mapped.getCount() < open);
+        }
+        assertTrue(mapped.getCount() <= count);
+        assertTrue(mapped.getMemoryUsed() <= memory);
+    }
+
+    @Test
+    public void readBlockMatchesElevationSample() throws Exception {
+        Path p = FAKE_HGT_DIR.resolve("N03E004.hgt");
+        try (FileChannel c = FileChannel.open(p, CREATE_NEW, READ, WRITE)) {
+            ShortBuffer b = c.map(MapMode.READ_WRITE, 0, HGT_FILE_SIZE).asShortBuffer();
+            for (int i = 0; i < 3601 * 3601; ++i)
+                b.put(i, (short) (i % 7919));
+        }
+        try (HgtDiscreteElevationModel dem = new HgtDiscreteElevationModel(p.toFile())) {
+            int[][] blocks = { { 14400, 10800, 3601, 1 }, { 14400, 14399, 10, 2 },
+                    { 16000, 12000, 37, 53 }, { 18000 - 5, 14400 - 7, 6, 8 } };
+            for (int[] block : blocks) {
+                int xMin = block[0], yMin = block[1], w = block[2], h = block[3];
+                short[] samples = new short[w * h];
+                dem.readBlock(xMin, yMin, w, h, samples);
+                for (int y = yMin; y < yMin + h; ++y) {
+                    for (int x = xMin; x < xMin + w; ++x)
+                        assertEquals(dem.elevationSample(x, y), samples[(y - yMin) * w + x - xMin], 0);
+                }
+            }
+            short[] row = new short[12];
+            dem.readRow(15000, 11000, row, 2, 10);
+            for (int i = 0; i < 10; ++i)
+                assertEquals(dem.elevationSample(15000 + i, 11000), row[i + 2], 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void readBlockFailsWhenBlockIsNotInExtent() throws Exception {
+        Path p = copyEmptyHgtFileAs("N02E002.hgt");
+        try (HgtDiscreteElevationModel dem = new HgtDiscreteElevationModel(p.toFile())) {
+            dem.readBlock(7200 + 3590, 7200, 12, 1, new short[12]);
+        }
+    }
+
     private static void createHgtDemWithFileNamed(String hgtFileName) throws Exception {
         Path p = copyEmptyHgtFileAs(hgtFileName);
         try (DiscreteElevationModel d = new HgtDiscreteElevationModel(p.toFile())) {}
@@ -0,0 +1,201 @@
+package ch.epfl.alpano.dem;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ch.epfl.alpano.Interval1D;
+import ch.epfl.alpano.Interval2D;
+
+public class HgtTileCatalogTest {
+    private final static long HGT_FILE_SIZE = 3601L * 3601L * 2L;
+    private final static String[] TILES = { "N45E006", "N45E007", "N46E006", "S01W001" };
+    private static Path HGT_DIR;
+
+    @BeforeClass
+    public static void createHgtFiles() throws IOException {
+        HGT_DIR = Files.createTempDirectory("catalog");
+        for (int i = 0; i < TILES.length; ++i) {
+            Path p = HGT_DIR.resolve(TILES[i] + ".hgt");
+            try (FileChannel c = FileChannel.open(p, CREATE_NEW, READ, WRITE)) {
+                ShortBuffer b = c.map(MapMode.READ_WRITE, 0, HGT_FILE_SIZE).asShortBuffer();
+                // next to the north-west corner of the tile
+                b.put(3602, (short) (i + 1));
+            }
+        }
+        Files.write(HGT_DIR.resolve("notes.txt"), new byte[] { 1 });
+    }
+
+    @AfterClass
+    public static void deleteHgtFiles() throws IOException {
+        for (File f : HGT_DIR.toFile().listFiles())
+            Files.delete(f.toPath());
+        Files.delete(HGT_DIR);
+    }
+
+    @Test
+    public void extentCoversAllTiles() throws Exception {
+        try (HgtTileCatalog c = new HgtTileCatalog(HGT_DIR.toFile(), 2)) {
+            assertEquals(new Interval2D(
+                    new Interval1D(-3600, 8 * 3600),
+                    new Interval1D(-3600, 47 * 3600)), c.extent());
+        }
+    }
+
+    @Test
+    public void constructorDoesNotMapAnyTile() throws Exception {
+        try (HgtTileCatalog c = new HgtTileCatalog(HGT_DIR.toFile(), 2)) {
+            assertEquals(0, c.mappedTiles());
+        }
+    }
+
+    @Test
+    public void elevationSampleReadsTheRightTiles() throws Exception {
+        try (HgtTileCatalog c = new HgtTileCatalog(HGT_DIR.toFile(), 2)) {
+            for (int k = 0; k < 3; ++k) {
+                assertEquals(1, c.elevationSample(6 * 3600 + 1, 46 * 3600 - 1), 0);
+                assertEquals(2, c.elevationSample(7 * 3600 + 1, 46 * 3600 - 1), 0);
+                assertEquals(3, c.elevationSample(6 * 3600 + 1, 47 * 3600 - 1), 0);
+                assertEquals(4, c.elevationSample(-3600 + 1, -1), 0);
+                assertEquals(0, c.elevationSample(6 * 3600 + 10, 45 * 3600 + 10), 0);
+                assertTrue(c.mappedTiles() <= 2);
+            }
+        }
+    }
+
+    @Test
+    public void elevationSampleIsCorrectWhenTilesAreRemovedConcurrently() throws Exception {
+        int[][] samples = {
+                { 6 * 3600 + 1, 46 * 3600 - 1, 1 },
+                { 7 * 3600 + 1, 46 * 3600 - 1, 2 },
+                { 6 * 3600 + 1, 47 * 3600 - 1, 3 } };
+        try (HgtTileCatalog c = new HgtTileCatalog(HGT_DIR.toFile(), 1)) {
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<Boolean>> results = new ArrayList<>();
+                for (int t = 0; t < 4; ++t) {
+                    int first = t;
+                    results.add(executor.submit(() -> {
+                        for (int k = 0; k < 2000; ++k) {
+                            int[] s = samples[(first + k) % samples.length];
+                            if (c.elevationSample(s[0], s[1]) != s[2])
+                                return false;
+                        }
+                        return true;
+                    }));
+                }
+                for (Future<Boolean> r : results)
+                    assertTrue(r.get());
+            } finally {
+                executor.shutdown();
+            }
+            assertEquals(1, c.mappedTiles());
+        }
+    }
+
+    @Test
+    public void removedTilesAreClosedOnceNotRead() throws Exception {
+        BufferPoolMXBean mapped = ManagementFactory
+                .getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(b -> b.getName().equals("mapped"))
+                .findFirst().get();
+        long count = mapped.getCount();
+        try (HgtTileCatalog c = new HgtTileCatalog(HGT_DIR.toFile(), 1)) {
+            for (int k = 0; k < 100; ++k) {
+                assertEquals(1, c.elevationSample(6 * 3600 + 1, 46 * 3600 - 1), 0);
+                assertEquals(2, c.elevationSample(7 * 3600 + 1, 46 * 3600 - 1), 0);
+                assertTrue(mapped.getCount() <= count + 1);
+            }
+        }
+        assertTrue(mapped.getCount() <= count);
+    }
+
+    @Test
+    public void pyramidIsBuiltAndSavedWhenTilesAreFirstUsed() throws Exception {
+        try (HgtTileCatalog c = new HgtTileCatalog(HGT_DIR.toFile(), 2)) {
+            ElevationPyramid p = c.pyramid();
+            assertEquals(c.extent(), p.extent());
+            assertEquals(0, c.mappedTiles());
+            assertEquals(1, p.maxElevation(6 * 3600, 46 * 3600 - 10, 6 * 3600 + 10, 46 * 3600), 0);
+            assertTrue(HGT_DIR.resolve("N45E006.max").toFile().isFile());
+            assertTrue(!HGT_DIR.resolve("N45E007.max").toFile().exists());
+            // over two tiles and a tile missing from the directory
+            assertEquals(3, p.maxElevation(6 * 3600, 45 * 3600, 8 * 3600, 47 * 3600), 0);
+            assertEquals(0, p.maxElevation(0, 20 * 3600, 10, 20 * 3600 + 10), 0);
+            assertEquals(Double.NEGATIVE_INFINITY, p.maxElevation(-10 * 3600, 0, -9 * 3600, 10), 0);
+        }
+    }
+
+    @Test
+    public void slopesAreComputedWhenTilesAreFirstUsed() throws Exception {
+        try (HgtTileCatalog c = new HgtTileCatalog(HGT_DIR.toFile(), 2)) {
+            DiscreteElevationModel slopes = c.slopes();
+            assertEquals(c.extent(), slopes.extent());
+            assertEquals(0, c.mappedTiles());
+            // the sample of elevation 1 has a neighbour of elevation 0
+            double slope = slopes.elevationSample(6 * 3600, 46 * 3600 - 1);
+            assertTrue(slope > 0);
+            assertEquals(slope, new ContinuousElevationModel(c).slopeAt(
+                    6 * 3600 / DiscreteElevationModel.SAMPLES_PER_RADIAN,
+                    (46 * 3600 - 1) / DiscreteElevationModel.SAMPLES_PER_RADIAN), 1e-4);
+            assertTrue(HGT_DIR.resolve("N45E006.slp").toFile().isFile());
+            assertTrue(Double.isNaN(slopes.elevationSample(0, 20 * 3600)));
+        }
+    }
+
+    @Test
+    public void missingTilesHaveZeroElevation() throws Exception {
+        try (HgtTileCatalog c = new HgtTileCatalog(HGT_DIR.toFile(), 2)) {
+            assertEquals(0, c.elevationSample(3600 * 3, 3600 * 20), 0);
+            assertEquals(0, c.mappedTiles());
+        }
+    }
+
+    @Test
+    public void closeUnmapsAllTiles() throws Exception {
+        HgtTileCatalog c = new HgtTileCatalog(HGT_DIR.toFile(), 3);
+        c.elevationSample(6 * 3600 + 1, 46 * 3600 - 1);
+        c.elevationSample(7 * 3600 + 1, 46 * 3600 - 1);
+        assertEquals(2, c.mappedTiles());
+        c.close();
+        assertEquals(0, c.mappedTiles());
+    }
+
+    @SuppressWarnings("resource")
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorFailsWithoutHgtFiles() throws IOException {
+        Path empty = Files.createTempDirectory("catalog");
+        try {
+            new HgtTileCatalog(empty.toFile(), 2);
+        } finally {
+            Files.delete(empty);
+        }
+    }
+
+    @SuppressWarnings("resource")
+    @Test(expected = IllegalArgumentException.class)
+    public void elevationSampleFailsOutsideOfExtent() {
+        new HgtTileCatalog(HGT_DIR.toFile(), 2).elevationSample(0, 48 * 3600);
+    }
+}
@@ -0,0 +1,105 @@
+package ch.epfl.alpano.dem;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static java.lang.Math.PI;
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
+import static java.lang.Math.toRadians;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.epfl.alpano.GeoPoint;
+import ch.epfl.alpano.Interval1D;
+import ch.epfl.alpano.Interval2D;
+
+public class SlopeRasterTest {
+    private final static Interval2D EXTENT = new Interval2D(
+            new Interval1D(3600, 3800),
+            new Interval1D(7200, 7350));
+
+    @Test
+    public void slopeAtMatchesComputedSlope() throws Exception {
+        DiscreteElevationModel dem = new HillyDEM(EXTENT);
+        try (SlopeRaster slopes = SlopeRaster.of(dem, tempFile())) {
+            ContinuousElevationModel computed = new ContinuousElevationModel(dem);
+            ContinuousElevationModel precomputed = new ContinuousElevationModel(dem, slopes);
+            Random rng = newRandom();
+            double[] elevationAndSlope = new double[2];
+            for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+                // the points around the extent use the computed slopes
+                GeoPoint p = new GeoPoint(
+                        toRadians(1 + rng.nextDouble() * 220 / 3600d - 10 / 3600d),
+                        toRadians(2 + rng.nextDouble() * 170 / 3600d - 10 / 3600d));
+                assertEquals(computed.slopeAt(p), precomputed.slopeAt(p), 2e-5);
+                precomputed.elevationAndSlopeAt(p.longitude(), p.latitude(), elevationAndSlope);
+                assertEquals(precomputed.slopeAt(p), elevationAndSlope[1], 0);
+            }
+        }
+    }
+
+    @Test
+    public void samplesOnEastAndNorthEdgesAreNotANumber() throws Exception {
+        try (SlopeRaster slopes = SlopeRaster.of(new HillyDEM(EXTENT), tempFile())) {
+            assertTrue(Double.isNaN(slopes.elevationSample(3800, 7200)));
+            assertTrue(Double.isNaN(slopes.elevationSample(3600, 7350)));
+            assertTrue(slopes.elevationSample(3799, 7349) >= 0);
+        }
+    }
+
+    @Test
+    public void rasterSavedToFileIsReadBack() throws Exception {
+        File f = tempFile();
+        double slope;
+        try (SlopeRaster slopes = SlopeRaster.of(new HillyDEM(EXTENT), f)) {
+            slope = slopes.elevationSample(3700, 7300);
+        }
+        assertTrue(slope > 0);
+        try (SlopeRaster slopes = SlopeRaster.of(new ConstantElevationDEM(EXTENT, 0), f)) {
+            assertEquals(slope, slopes.elevationSample(3700, 7300), 0);
+        }
+    }
+
+    @Test
+    public void rasterOfOtherExtentIsComputedAgain() throws Exception {
+        File f = tempFile();
+        try (SlopeRaster slopes = SlopeRaster.of(new HillyDEM(EXTENT), f)) {}
+        Interval2D other = new Interval2D(new Interval1D(0, 10), new Interval1D(0, 10));
+        try (SlopeRaster slopes = SlopeRaster.of(new ConstantElevationDEM(other, 0), f)) {
+            assertEquals(other, slopes.extent());
+            assertEquals(0, slopes.elevationSample(5, 5), 0);
+        }
+    }
+
+    private static File tempFile() throws IOException {
+        File f = File.createTempFile("slopes", ".slp");
+        f.deleteOnExit();
+        f.delete();
+        return f;
+    }
+
+    private final static class HillyDEM implements DiscreteElevationModel {
+        private final Interval2D extent;
+
+        public HillyDEM(Interval2D extent) { this.extent = extent; }
+
+        @Override
+        public void close() throws Exception { }
+
+        @Override
+        public Interval2D extent() { return extent; }
+
+        @Override
+        public double elevationSample(int x, int y) {
+            if (! extent.contains(x, y))
+                throw new IllegalArgumentException();
+            return 1500 + 1000 * sin(2 * PI * x / 50) * cos(2 * PI * y / 70);
+        }
+    }
+}
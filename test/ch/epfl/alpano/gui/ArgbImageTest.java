@@ -0,0 +1,119 @@
+package ch.epfl.alpano.gui;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static java.lang.Math.toRadians;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import ch.epfl.alpano.GeoPoint;
+import ch.epfl.alpano.Panorama;
+import ch.epfl.alpano.PanoramaParameters;
+
+public class ArgbImageTest {
+    private static Panorama randomPanorama(int width, int height) {
+        PanoramaParameters parameters = new PanoramaParameters(
+                new GeoPoint(toRadians(7), toRadians(46)), 1000, 0,
+                toRadians(60), 100_000, width, height);
+        Panorama.Builder b = new Panorama.Builder(parameters);
+        Random rng = newRandom();
+        for (int x = 0; x < width; ++x) {
+            for (int y = 0; y < height; ++y) {
+                if (rng.nextInt(4) != 0)
+                    b.setDistanceAt(x, y, rng.nextFloat() * 100_000);
+                b.setSlopeAt(x, y, rng.nextFloat() * (float) (Math.PI / 2));
+            }
+        }
+        return b.build();
+    }
+
+    private static ImagePainter painter(Panorama p) {
+        ChannelPainter distance = p::distanceAt;
+        ChannelPainter slope = p::slopeAt;
+        ChannelPainter opacity = distance.map(d -> d == Float.POSITIVE_INFINITY ? 0 : 1);
+        ChannelPainter h = distance.div(100000f).cycle().mul(360f);
+        ChannelPainter s = distance.div(200000f).clamped().inverted();
+        ChannelPainter b = slope.mul(2f).div((float) Math.PI).inverted().mul(0.7f).add(0.3f);
+        return ImagePainter.hsb(h, s, b, opacity);
+    }
+
+    @Test
+    public void renderInParallelEqualsRender() {
+        Panorama p = randomPanorama(61, 43);
+        ArgbImage image = ArgbImage.render(p, painter(p));
+        assertEquals(61, image.width());
+        assertEquals(43, image.height());
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            assertArrayEquals(image.pixels(),
+                    ArgbImage.renderInParallel(p, painter(p), pool).pixels());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void argbAtEqualsFill() {
+        Panorama p = randomPanorama(23, 17);
+        ImagePainter painter = painter(p);
+        ArgbImage image = ArgbImage.render(p, painter);
+        for (int y = 0; y < 17; ++y)
+            for (int x = 0; x < 23; ++x)
+                assertEquals(image.argbAt(x, y), painter.argbAt(x, y));
+    }
+
+    @Test
+    public void pngIsReadBackWithTheSameColors() throws IOException {
+        int width = 157, height = 29;
+        Random rng = newRandom();
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; ++i) {
+            // smooth areas, noise and translucent pixels
+            double opacity = rng.nextInt(3) == 0 ? rng.nextDouble() : 1;
+            pixels[i] = i % width < width / 2
+                    ? Argb.hsb((i % width) * 2, 0.5, (i / width) / (double) height, 1)
+                    : Argb.hsb(rng.nextDouble() * 360, rng.nextDouble(),
+                            rng.nextDouble(), opacity);
+        }
+        ArgbImage image = new ArgbImage(width, height, pixels);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        image.writePng(out);
+        BufferedImage read = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(width, read.getWidth());
+        assertEquals(height, read.getHeight());
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                int expected = image.argbAt(x, y);
+                int a = expected >>> 24;
+                int actual = read.getRGB(x, y);
+                assertEquals(a, actual >>> 24);
+                // premultiplied again, the components are within rounding
+                for (int shift = 0; shift < 24; shift += 8) {
+                    int c = (actual >>> shift) & 0xFF;
+                    assertEquals((expected >>> shift) & 0xFF, (c * a + 127) / 255, 1);
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorFailsWithTooFewPixels() {
+        new ArgbImage(10, 10, new int[99]);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void argbAtFailsOutsideOfTheImage() {
+        new ArgbImage(2, 2, new int[4]).argbAt(2, 0);
+    }
+}
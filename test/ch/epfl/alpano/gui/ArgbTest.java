@@ -0,0 +1,61 @@
+package ch.epfl.alpano.gui;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ArgbTest {
+    @Test
+    public void hsbIsCorrectForPrimaryColors() {
+        assertEquals(0xFFFF0000, Argb.hsb(0, 1, 1, 1));
+        assertEquals(0xFF00FF00, Argb.hsb(120, 1, 1, 1));
+        assertEquals(0xFF0000FF, Argb.hsb(240, 1, 1, 1));
+        assertEquals(0xFF0000FF, Argb.hsb(-120, 1, 1, 1));
+        assertEquals(0xFFFFFF00, Argb.hsb(420, 1, 1, 1));
+    }
+
+    @Test
+    public void hsbWithoutSaturationIsGray() {
+        Random rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+            double b = rng.nextDouble(), o = rng.nextDouble();
+            assertEquals(Argb.gray(b, o), Argb.hsb(rng.nextDouble() * 360, 0, b, o));
+        }
+    }
+
+    @Test
+    public void colorsArePremultipliedByTheirOpacity() {
+        assertEquals(0x80808080, Argb.premultiplied(1, 1, 1, 0.5));
+        assertEquals(0x80800000, Argb.hsb(0, 1, 1, 0.5));
+        assertEquals(0, Argb.hsb(200, 0.5, 0.5, 0));
+        Random rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+            int c = Argb.hsb(rng.nextDouble() * 360, rng.nextDouble(),
+                    rng.nextDouble(), rng.nextDouble());
+            int a = c >>> 24;
+            for (int shift = 0; shift < 24; shift += 8)
+                assertTrue(((c >>> shift) & 0xFF) <= a);
+        }
+    }
+
+    @Test
+    public void hsbOfHueNotANumberIsRedLikeInJavaFX() {
+        assertEquals(0xFFFF0000, Argb.hsb(Double.NaN, 1, 1, 1));
+        assertEquals(0xFFFF0000, Argb.hsb(Double.POSITIVE_INFINITY, 1, 1, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void hsbFailsWithInvalidSaturation() {
+        Argb.hsb(0, 1.5, 1, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void grayFailsWithInvalidOpacity() {
+        Argb.gray(0.5, -0.1);
+    }
+}
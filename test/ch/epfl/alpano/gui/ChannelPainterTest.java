@@ -0,0 +1,55 @@
+package ch.epfl.alpano.gui;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ChannelPainterTest {
+    private static final int WIDTH = 37, HEIGHT = 23;
+
+    private static ChannelPainter randomPainter() {
+        Random rng = newRandom();
+        float[] values = new float[WIDTH * HEIGHT];
+        for (int i = 0; i < values.length; ++i)
+            values[i] = rng.nextInt(10) == 0 ? Float.POSITIVE_INFINITY
+                    : rng.nextFloat() * 300_000f;
+        return (x, y) -> values[x + y * WIDTH];
+    }
+
+    private static void assertFillEqualsValueAt(ChannelPainter p, int fromY, int toY) {
+        float[] values = new float[(toY - fromY) * WIDTH + 1];
+        p.fill(values, WIDTH, fromY, toY);
+        for (int y = fromY; y < toY; ++y) {
+            for (int x = 0; x < WIDTH; ++x)
+                assertEquals(p.valueAt(x, y), values[x + (y - fromY) * WIDTH], 0);
+        }
+        assertEquals(0, values[values.length - 1], 0);
+    }
+
+    @Test
+    public void fillEqualsValueAtForEveryStage() {
+        ChannelPainter d = randomPainter();
+        ChannelPainter[] painters = {
+                d,
+                d.map(v -> v == Float.POSITIVE_INFINITY ? 0 : 1),
+                d.div(100000f).cycle().mul(360f),
+                d.div(200000f).clamped().inverted(),
+                d.mul(2f).div((float) Math.PI).inverted().mul(0.7f).add(0.3f),
+                d.sub(1000f).clamped() };
+        for (ChannelPainter p : painters)
+            assertFillEqualsValueAt(p, 0, HEIGHT);
+    }
+
+    @Test
+    public void fillOnlyFillsTheGivenRows() {
+        assertFillEqualsValueAt(randomPainter().div(7f).cycle(), 5, 11);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fillFailsWhenTheRowsAreNotInTheArray() {
+        randomPainter().add(1f).fill(new float[WIDTH * 5], WIDTH, 10, 16);
+    }
+}